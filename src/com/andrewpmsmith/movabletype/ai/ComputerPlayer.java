@@ -0,0 +1,243 @@
+package com.andrewpmsmith.movabletype.ai;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.Move;
+
+/**
+ * Plays a turn for the computer without blocking the calling thread.
+ *
+ * The game is copied when play(..) is called, and a Search of the copy runs
+ * on a background thread of low priority, so the game can still be drawn
+ * while the computer thinks. The move chosen is handed back on the result
+ * executor, normally the UI thread, to be played on the real game.
+ *
+ * The move is found by alpha-beta Search, using a thread for each processor
+ * by default, or by MonteCarloSearch. Near the end of the game an
+ * EndgameSolver is tried first, and its move played if it solves the game
+ * in half the time. How fast each search was is written to
+ * the log under the tag ComputerPlayer.
+ */
+public class ComputerPlayer {
+
+	public static final long DEFAULT_BUDGET_MILLIS = 500;
+	public static final int DEFAULT_THREADS = Runtime.getRuntime()
+			.availableProcessors();
+
+	private static final String TAG = "ComputerPlayer";
+
+	/**
+	 * How the computer looks for its move.
+	 */
+	public enum Engine {
+		ALPHA_BETA, MONTE_CARLO
+	}
+
+	/**
+	 * Receives the move chosen by play(..).
+	 */
+	public interface MoveCallback {
+		/**
+		 * @param move
+		 *            the tiles to play, or a pass if it has none.
+		 */
+		public void onMoveChosen(Move move);
+	}
+
+	private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ComputerPlayer search");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+
+	};
+
+	// Searches run here, one at a time
+	private static final ExecutorService sSearchExecutor = Executors
+			.newSingleThreadExecutor(sThreadFactory);
+
+	// The search's other threads, created as they are needed
+	private static final ExecutorService sHelperExecutor = Executors
+			.newCachedThreadPool(sThreadFactory);
+
+	private final Context mContext;
+	private final Engine mEngine;
+	private final long mBudgetMillis;
+	private final int mThreads;
+
+	// The search in progress, if any
+	private volatile Search mSearch;
+	private volatile MonteCarloSearch mMonteCarloSearch;
+	private volatile EndgameSolver mEndgameSolver;
+	private volatile boolean mCancelled;
+
+	public ComputerPlayer(Context context) {
+		this(context, DEFAULT_BUDGET_MILLIS);
+	}
+
+	/**
+	 * @param budgetMillis
+	 *            how long to think about each move.
+	 */
+	public ComputerPlayer(Context context, long budgetMillis) {
+		this(context, budgetMillis, DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param budgetMillis
+	 *            how long to think about each move.
+	 * @param threads
+	 *            how many threads to search with.
+	 */
+	public ComputerPlayer(Context context, long budgetMillis, int threads) {
+		this(context, Engine.ALPHA_BETA, budgetMillis, threads);
+	}
+
+	/**
+	 * @param budgetMillis
+	 *            how long to think about each move. The longer, the
+	 *            stronger the computer plays.
+	 * @param threads
+	 *            how many threads to search with. Monte Carlo search only
+	 *            uses one.
+	 */
+	public ComputerPlayer(Context context, Engine engine, long budgetMillis,
+			int threads) {
+		mContext = context;
+		mEngine = engine;
+		mBudgetMillis = budgetMillis;
+		mThreads = (engine == Engine.ALPHA_BETA) ? Math.max(1, threads) : 1;
+	}
+
+	/**
+	 * Choose a move for the player whose turn it is in game. Only one move
+	 * should be asked for at a time.
+	 *
+	 * @param resultExecutor
+	 *            where callback is run.
+	 */
+	public void play(GameModel game, final MoveCallback callback,
+			final Executor resultExecutor) {
+
+		final byte[] position = game.serialize();
+		mCancelled = false;
+
+		sSearchExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+
+				if (mCancelled)
+					return;
+
+				// A copy of the game for each thread
+				GameModel[] copies = new GameModel[mThreads];
+				for (int i = 0; i < mThreads; ++i) {
+					copies[i] = GameModel.deserialize(position, mContext);
+				}
+
+				final Move move = (copies[0] == null) ? new Move()
+						: chooseMove(copies);
+
+				// A cancel that raced with the start of the search only
+				// wastes the search, as its result is dropped here
+				if (mCancelled)
+					return;
+
+				resultExecutor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						if (!mCancelled)
+							callback.onMoveChosen(move);
+					}
+
+				});
+			}
+
+		});
+	}
+
+	/*
+	 * Search copies of the game for a move, on the search thread.
+	 */
+	private Move chooseMove(GameModel[] copies) {
+
+		long budgetMillis = mBudgetMillis;
+
+		// Near the end of the game, try to solve it outright first
+		int unplayed = EndgameSolver.countUnplayed(copies[0]);
+		if (unplayed <= EndgameSolver.MAX_UNPLAYED) {
+
+			EndgameSolver solver = new EndgameSolver(copies[0]);
+			mEndgameSolver = solver;
+			boolean proven = solver.solve(budgetMillis / 2);
+			mEndgameSolver = null;
+
+			Log.i(TAG, String.format(
+					"endgame %s, margin %d, %d positions in %d ms",
+					proven ? "solved" : "not solved", solver.getMargin(),
+					solver.getNodeCount(), solver.getElapsedMillis()));
+
+			if (proven || mCancelled)
+				return solver.getMove();
+			budgetMillis -= solver.getElapsedMillis();
+		}
+
+		if (mEngine == Engine.MONTE_CARLO) {
+			MonteCarloSearch search = new MonteCarloSearch(copies[0],
+					System.nanoTime());
+			mMonteCarloSearch = search;
+			Move move = search.findMove(budgetMillis, Integer.MAX_VALUE);
+			mMonteCarloSearch = null;
+
+			Log.i(TAG, String.format(
+					"%d playouts in %d ms (%d/s), tree size: %d",
+					search.getPlayoutCount(), search.getElapsedMillis(),
+					search.getPlayoutsPerSecond(), search.getTreeSize()));
+
+			return move;
+		}
+
+		Search search = new Search(copies, sHelperExecutor);
+		mSearch = search;
+		Move move = search.findMove(budgetMillis, Integer.MAX_VALUE);
+		mSearch = null;
+
+		Log.i(TAG, String.format(
+				"depth %d, %d positions in %d ms (%d/s), threads: %d",
+				search.getDepth(), search.getNodeCount(),
+				search.getElapsedMillis(), search.getNodesPerSecond(),
+				search.getThreadCount()));
+
+		return move;
+	}
+
+	/**
+	 * Stop thinking. The callback for the move being chosen won't be called.
+	 */
+	public void cancel() {
+		mCancelled = true;
+		Search search = mSearch;
+		if (search != null)
+			search.abort();
+		MonteCarloSearch monteCarloSearch = mMonteCarloSearch;
+		if (monteCarloSearch != null)
+			monteCarloSearch.abort();
+		EndgameSolver endgameSolver = mEndgameSolver;
+		if (endgameSolver != null)
+			endgameSolver.abort();
+	}
+
+}
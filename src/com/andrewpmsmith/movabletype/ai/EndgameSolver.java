@@ -0,0 +1,264 @@
+package com.andrewpmsmith.movabletype.ai;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+
+/**
+ * Finds the best play from a position near the end of the game, and the
+ * margin it wins or loses by, by searching every line of play to the end.
+ *
+ * The game ends as soon as every tile is owned, so once only a few tiles are
+ * unplayed a player can often end it at once, and the other must stop that
+ * or lose. Games can still go on for a long time while neither can, so the
+ * solver searches with alpha-beta on the final margin to a limited number of
+ * moves, twice: once counting lines cut off by the limit as the best result
+ * for the player to move at the root, and then as the worst. The two values
+ * bound the real one. The limit is raised until they meet, which proves the
+ * margin, and the move found by the search that counts cut off lines as lost
+ * achieves it.
+ *
+ * Moves that cover every unplayed tile, and so end the game, are tried
+ * first. Positions are remembered in a transposition table for each of the
+ * two searches, so positions reached by playing the same words in another
+ * order are searched once.
+ *
+ * Positions with many unplayed tiles can take too long to solve. The solver
+ * gives up when its time runs out, and only reports a result if it was
+ * proved. Like Search, moves are played on the game with apply(..) and
+ * undo(..), so the game must not be used by anything else meanwhile.
+ */
+public final class EndgameSolver {
+
+	// Positions with no more unplayed tiles than this are worth solving
+	public static final int MAX_UNPLAYED = 2;
+
+	private static final int TABLE_SIZE_LOG2 = 16;
+
+	// Lines longer than this aren't followed, and the position isn't solved
+	private static final int MAX_PLY = 64;
+
+	// How often the clock is checked, in positions
+	private static final int CLOCK_INTERVAL = 256;
+
+	private static final int ALL_TILES = (1 << GameModel.GRID_ITEMS) - 1;
+
+	private static final int MAX_MARGIN = GameModel.GRID_ITEMS;
+	private static final int INFINITY = MAX_MARGIN + 1;
+
+	private final GameModel mGame;
+
+	// For the search counting lines that are cut off as lost and as won
+	private final TranspositionTable mLowerTable = new TranspositionTable(
+			TABLE_SIZE_LOG2);
+	private final TranspositionTable mUpperTable = new TranspositionTable(
+			TABLE_SIZE_LOG2);
+
+	// The search in progress
+	private TranspositionTable mTable;
+	private boolean mOptimistic;
+
+	// One of each per ply
+	private final MoveGenerator[] mGenerators = new MoveGenerator[MAX_PLY];
+	private final MoveList[] mMoveLists = new MoveList[MAX_PLY];
+	private final Move[] mMoves = new Move[MAX_PLY];
+
+	private final int[] mBestTiles = new int[GameModel.GRID_ITEMS];
+	private int mBestLength;
+	private int mRootBestMove;
+
+	private int mRootPlayer;
+	private long mDeadline;
+	private final StopFlag mStop = new StopFlag();
+	private boolean mProven;
+	private int mMargin;
+	private long mNodes;
+	private long mElapsedNanos;
+
+	public EndgameSolver(GameModel game) {
+		mGame = game;
+		for (int i = 0; i < MAX_PLY; ++i) {
+			mGenerators[i] = new MoveGenerator(game);
+			mMoveLists[i] = new MoveList();
+			mMoves[i] = new Move();
+		}
+	}
+
+	/**
+	 * @return the number of tiles no player owns yet.
+	 */
+	public static int countUnplayed(GameModel game) {
+		return Integer.bitCount(unplayedTiles(game));
+	}
+
+	/**
+	 * Solve the position for the player whose turn it is.
+	 *
+	 * @return true if the position was solved in time. getMove() and
+	 *         getMargin() are then the best play and its result.
+	 */
+	public boolean solve(long budgetMillis) {
+
+		long start = System.nanoTime();
+		mDeadline = start + budgetMillis * 1000000;
+		mStop.start();
+		mProven = false;
+		mNodes = 0;
+		mMargin = 0;
+		mBestLength = 0;
+		mLowerTable.clear();
+		mUpperTable.clear();
+
+		if (mGame.getGameState() != GameState.GAME_OVER) {
+
+			mRootPlayer = (mGame.getGameState() == GameState.PLAYER1_TURN)
+					? GameModel.PLAYER1 : GameModel.PLAYER2;
+
+			for (int depth = 1; depth <= MAX_PLY && !mProven; ++depth) {
+
+				mTable = mUpperTable;
+				mOptimistic = true;
+				int upper = solve(depth, 0, -INFINITY, INFINITY);
+
+				mTable = mLowerTable;
+				mOptimistic = false;
+				int lower = solve(depth, 0, -INFINITY, INFINITY);
+
+				if (mStop.isStopped())
+					break;
+
+				if (lower == upper) {
+					mProven = true;
+					mMargin = lower;
+					mBestLength = mMoveLists[0].copyTiles(mRootBestMove,
+							mBestTiles);
+				}
+			}
+		}
+
+		mElapsedNanos = System.nanoTime() - start;
+
+		return mProven;
+	}
+
+	/**
+	 * Stop solving as soon as possible, and don't solve again. Safe to call
+	 * from any thread, even before solve(..) is.
+	 */
+	public void abort() {
+		mStop.cancel();
+	}
+
+	public boolean isProven() {
+		return mProven;
+	}
+
+	/**
+	 * @return the best move, or a pass if the position wasn't solved.
+	 */
+	public Move getMove() {
+		return new Move(mBestTiles, mBestLength);
+	}
+
+	/**
+	 * @return the number of tiles the player to move will lead by at the end
+	 *         of the game, if both players play their best. Negative if they
+	 *         will lose.
+	 */
+	public int getMargin() {
+		return mMargin;
+	}
+
+	public long getNodeCount() {
+		return mNodes;
+	}
+
+	public long getElapsedMillis() {
+		return mElapsedNanos / 1000000;
+	}
+
+	/*
+	 * Negamax alpha-beta to the end of the game, or depth moves: returns the
+	 * final margin for the player to move, or 0 if solving was abandoned.
+	 */
+	private int solve(int depth, int ply, int alpha, int beta) {
+
+		if (++mNodes % CLOCK_INTERVAL == 0 && System.nanoTime() > mDeadline)
+			mStop.stop();
+		if (mStop.isStopped())
+			return 0;
+
+		boolean rootToMove = (ply % 2 == 0);
+
+		if (mGame.getGameState() == GameState.GAME_OVER) {
+			int player = rootToMove ? mRootPlayer
+					: GameModel.PLAYER1 + GameModel.PLAYER2 - mRootPlayer;
+			int opponent = GameModel.PLAYER1 + GameModel.PLAYER2 - player;
+			return Integer.bitCount(mGame.getOwnedTiles(player))
+					- Integer.bitCount(mGame.getOwnedTiles(opponent));
+		}
+
+		// The line is cut off, and counted as the best or worst it could
+		// turn out for the player to move at the root
+		if (depth == 0)
+			return (rootToMove == mOptimistic) ? MAX_MARGIN : -MAX_MARGIN;
+
+		long hash = mGame.getHash();
+		int originalAlpha = alpha;
+		long result = mTable.probe(hash);
+		if (TranspositionTable.isCutoff(result, depth, alpha, beta))
+			return TranspositionTable.getValue(result);
+		alpha = TranspositionTable.narrowAlpha(result, depth, alpha);
+		beta = TranspositionTable.narrowBeta(result, depth, beta);
+		int hashMove = TranspositionTable.getBestMove(result);
+
+		MoveList moves = mMoveLists[ply];
+		moves.generate(mGenerators[ply], hashMove, unplayedTiles(mGame));
+
+		Move move = mMoves[ply];
+		int best = -INFINITY;
+		int bestMove = -1;
+
+		for (int i = 0; i < moves.mCount; ++i) {
+
+			int index = moves.mOrder[i];
+			moves.set(index, move);
+			if (mGame.apply(move) != TurnResult.SUCCESS)
+				continue;
+
+			int value = -solve(depth - 1, ply + 1, -beta, -alpha);
+
+			mGame.undo(move);
+
+			if (mStop.isStopped())
+				return 0;
+
+			if (value > best) {
+				best = value;
+				bestMove = index;
+			}
+			if (value > alpha)
+				alpha = value;
+			if (alpha >= beta)
+				break;
+		}
+
+		mTable.store(hash, depth, best,
+				TranspositionTable.boundOf(best, originalAlpha, beta),
+				bestMove);
+
+		if (ply == 0)
+			mRootBestMove = bestMove;
+
+		return best;
+	}
+
+	private static int unplayedTiles(GameModel game) {
+		return ALL_TILES
+				& ~(game.getOwnedTiles(GameModel.PLAYER1) | game
+						.getOwnedTiles(GameModel.PLAYER2));
+	}
+
+}
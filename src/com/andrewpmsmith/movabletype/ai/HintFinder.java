@@ -0,0 +1,176 @@
+package com.andrewpmsmith.movabletype.ai;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.Context;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+
+/**
+ * Looks for a word to suggest to the player whose turn it is, in the
+ * background, so that a hint can be given the moment it is asked for.
+ *
+ * The game is copied when start(..) is called, normally as the turn begins,
+ * and its words are ranked on a background thread by their swing: the change
+ * in the lead that getPoints(..) would show if the word were played. The best
+ * word found so far can be read with getHint() at any time without waiting.
+ * Near the end of the game an EndgameSolver is then given a while to find
+ * the best finish, which replaces the hint if it is proved.
+ */
+public class HintFinder {
+
+	public static final long DEFAULT_FINISH_BUDGET_MILLIS = 2000;
+
+	private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "HintFinder");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+
+	};
+
+	private static final Executor sExecutor = Executors
+			.newSingleThreadExecutor(sThreadFactory);
+
+	private final Context mContext;
+	private final Executor mExecutor;
+	private final long mFinishBudgetMillis;
+
+	// Counts calls to start(..) and cancel(), so that a search can tell
+	// when its position is out of date
+	private volatile int mGeneration;
+
+	private volatile Move mHint;
+	private volatile boolean mFinished;
+	private volatile EndgameSolver mEndgameSolver;
+
+	public HintFinder(Context context) {
+		this(context, sExecutor, DEFAULT_FINISH_BUDGET_MILLIS);
+	}
+
+	/**
+	 * @param executor
+	 *            where the words are ranked.
+	 * @param finishBudgetMillis
+	 *            how long to try to solve the end of the game for.
+	 */
+	public HintFinder(Context context, Executor executor,
+			long finishBudgetMillis) {
+		mContext = context;
+		mExecutor = executor;
+		mFinishBudgetMillis = finishBudgetMillis;
+	}
+
+	/**
+	 * Start looking for a hint for the player whose turn it is in game,
+	 * forgetting any earlier hint.
+	 */
+	public void start(GameModel game) {
+
+		final byte[] position = game.serialize();
+		final int generation;
+		synchronized (this) {
+			generation = ++mGeneration;
+			mHint = null;
+			mFinished = false;
+		}
+		abortEndgameSolver();
+
+		mExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				if (generation != mGeneration)
+					return;
+
+				GameModel copy = GameModel.deserialize(position, mContext);
+				if (copy != null)
+					findHint(copy, generation);
+
+				synchronized (HintFinder.this) {
+					if (generation == mGeneration)
+						mFinished = true;
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Stop looking, and forget the hint.
+	 */
+	public void cancel() {
+		synchronized (this) {
+			++mGeneration;
+			mHint = null;
+			mFinished = false;
+		}
+		abortEndgameSolver();
+	}
+
+	/**
+	 * @return the best word found so far, or null if none has been found
+	 *         yet. Never blocks.
+	 */
+	public Move getHint() {
+		return mHint;
+	}
+
+	/**
+	 * @return true once getHint() is the best word that will be found.
+	 */
+	public boolean isFinished() {
+		return mFinished;
+	}
+
+	private void findHint(GameModel game, int generation) {
+
+		MoveGenerator generator = new MoveGenerator(game);
+		int bestSwing = -1;
+		while (generator.next()) {
+			if (generation != mGeneration)
+				return;
+
+			if (generator.getSwing() > bestSwing) {
+				bestSwing = generator.getSwing();
+				Move move = new Move();
+				generator.getMove(move);
+				publish(move, generation);
+			}
+		}
+
+		int unplayed = EndgameSolver.countUnplayed(game);
+		if (bestSwing < 0 || unplayed > EndgameSolver.MAX_UNPLAYED)
+			return;
+
+		EndgameSolver solver = new EndgameSolver(game);
+		mEndgameSolver = solver;
+		if (generation == mGeneration && solver.solve(mFinishBudgetMillis)) {
+			// The solver may find passing best, but that's no help as a hint
+			Move move = solver.getMove();
+			if (!move.isPass())
+				publish(move, generation);
+		}
+		mEndgameSolver = null;
+	}
+
+	private synchronized void publish(Move move, int generation) {
+		if (generation == mGeneration)
+			mHint = move;
+	}
+
+	private void abortEndgameSolver() {
+		EndgameSolver solver = mEndgameSolver;
+		if (solver != null)
+			solver.abort();
+	}
+
+}
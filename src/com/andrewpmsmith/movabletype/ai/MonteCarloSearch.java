@@ -0,0 +1,472 @@
+package com.andrewpmsmith.movabletype.ai;
+
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameResult;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+import com.andrewpmsmith.movabletype.model.WordTrie;
+
+/**
+ * Chooses a move for the player whose turn it is by Monte Carlo tree search:
+ * the game is played out at random from the current position many times,
+ * and the move that led to the most wins is chosen.
+ *
+ * Each playout walks down a tree of the positions seen so far, picking the
+ * move that balances how often it has won against how little it has been
+ * tried (UCT), then plays random words until the game ends, and counts the
+ * result in every position on the way. A position's moves, from a
+ * MoveGenerator and a pass, are added to the tree once it has been reached
+ * twice.
+ *
+ * The tree is held in parallel primitive arrays of fixed size, allocated
+ * when the search is created, so a search allocates nothing however many
+ * playouts it makes. Once the tree is full, playouts go on from its leaves.
+ * Like Search, moves are played on the game with apply(..) and undo(..), so
+ * the game must not be used by anything else while a search is running.
+ */
+public final class MonteCarloSearch {
+
+	public static final int DEFAULT_TREE_SIZE = 1 << 16;
+
+	// How much untried moves are favoured over ones known to win
+	private static final float EXPLORATION = 1.4f;
+
+	// A position is expanded on this visit
+	private static final int EXPAND_VISITS = 2;
+
+	private static final int MAX_TREE_DEPTH = 64;
+
+	// Playouts still going after this many moves are scored by tile count
+	private static final int MAX_PLAYOUT = 128;
+
+	// Random words tried before looking through every word for one to play
+	private static final int RANDOM_TRIES = 8;
+
+	// How often the clock is checked, in playouts
+	private static final int CLOCK_INTERVAL = 16;
+
+	private static final int NOT_EXPANDED = -1;
+
+	private final GameModel mGame;
+	private final Random mRandom;
+
+	// The tree. Results are counted in half points, from the point of view
+	// of the player who made the move leading to each position. The children
+	// of a position are next to each other. Their tiles are in mTiles.
+	private final int mCapacity;
+	private final int[] mFirstChild;
+	private final int[] mChildCount;
+	private final int[] mVisits;
+	private final int[] mScores;
+	private final int[] mTileStarts;
+	private final byte[] mLengths;
+	private final byte[] mTiles;
+	private int mNodeCount;
+	private int mTileCount;
+
+	private final MoveGenerator mGenerator;
+
+	// The path taken by the current playout, and whose turn it was before
+	// the move into each position on it
+	private final int[] mPath = new int[MAX_TREE_DEPTH + 1];
+	private final GameState[] mMovers = new GameState[MAX_TREE_DEPTH + 1];
+	private final Move[] mTreeMoves = new Move[MAX_TREE_DEPTH];
+	private final Move[] mPlayoutMoves = new Move[MAX_PLAYOUT];
+	private final int[] mMoveTiles = new int[GameModel.GRID_ITEMS];
+
+	// Every word on the board, for the playouts, and for each letter a mask
+	// of the tiles showing it
+	private final char[] mWordLetters;
+	private final int[] mWordStarts;
+	private final int mWordCount;
+	private final int[] mLetterTiles = new int[26];
+
+	private final StopFlag mStop = new StopFlag();
+	private int mPlayouts;
+	private long mElapsedNanos;
+
+	public MonteCarloSearch(GameModel game, long seed) {
+		this(game, seed, DEFAULT_TREE_SIZE);
+	}
+
+	/**
+	 * @param seed
+	 *            for the random playouts. Searches given the same seed,
+	 *            position and number of playouts choose the same move.
+	 * @param treeSize
+	 *            the most positions the tree can hold.
+	 */
+	public MonteCarloSearch(GameModel game, long seed, int treeSize) {
+
+		mGame = game;
+		mRandom = new Random(seed);
+		mGenerator = new MoveGenerator(game);
+
+		mCapacity = treeSize;
+		mFirstChild = new int[treeSize];
+		mChildCount = new int[treeSize];
+		mVisits = new int[treeSize];
+		mScores = new int[treeSize];
+		mTileStarts = new int[treeSize];
+		mLengths = new byte[treeSize];
+		mTiles = new byte[treeSize * 4];
+
+		for (int i = 0; i < MAX_TREE_DEPTH; ++i) {
+			mTreeMoves[i] = new Move();
+		}
+		for (int i = 0; i < MAX_PLAYOUT; ++i) {
+			mPlayoutMoves[i] = new Move();
+		}
+
+		for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+			mLetterTiles[game.getLetter(i) - 'A'] |= 1 << i;
+		}
+
+		WordTrie boardWords = game.getBoardWords();
+		int letters = 0;
+		int words = 0;
+		WordTrie.WordIterator it = boardWords.iterateWords();
+		while (it.next()) {
+			if (it.getLength() >= 2) {
+				letters += it.getLength();
+				++words;
+			}
+		}
+
+		mWordLetters = new char[letters];
+		mWordStarts = new int[words + 1];
+		mWordCount = words;
+		it = boardWords.iterateWords();
+		words = 0;
+		while (it.next()) {
+			if (it.getLength() >= 2) {
+				int start = mWordStarts[words];
+				System.arraycopy(it.getLetters(), 0, mWordLetters, start,
+						it.getLength());
+				mWordStarts[++words] = start + it.getLength();
+			}
+		}
+	}
+
+	/**
+	 * Play out games until the time is up or maxPlayouts have been played.
+	 *
+	 * @return the move tried most, or of those the one that won most, which
+	 *         is a pass if there is nothing else to play.
+	 */
+	public Move findMove(long budgetMillis, int maxPlayouts) {
+
+		long start = System.nanoTime();
+		long deadline = start + budgetMillis * 1000000;
+		mStop.start();
+		mPlayouts = 0;
+
+		// The root
+		mNodeCount = 1;
+		mTileCount = 0;
+		mFirstChild[0] = NOT_EXPANDED;
+		mVisits[0] = 0;
+		mScores[0] = 0;
+
+		mChildCount[0] = 0;
+
+		Move best = new Move();
+		if (mGame.getGameState() != GameState.GAME_OVER) {
+
+			expand(0);
+
+			while (mPlayouts < maxPlayouts && !mStop.isStopped()) {
+				playout();
+				++mPlayouts;
+				if (mPlayouts % CLOCK_INTERVAL == 0
+						&& System.nanoTime() > deadline)
+					break;
+			}
+
+			int bestChild = -1;
+			for (int i = 0; i < mChildCount[0]; ++i) {
+				int child = mFirstChild[0] + i;
+				if (bestChild < 0
+						|| mVisits[child] > mVisits[bestChild]
+						|| (mVisits[child] == mVisits[bestChild]
+								&& mScores[child] > mScores[bestChild]))
+					bestChild = child;
+			}
+			if (bestChild >= 0)
+				setMove(bestChild, best);
+		}
+
+		mElapsedNanos = System.nanoTime() - start;
+
+		return best;
+	}
+
+	/**
+	 * Stop the search as soon as possible, and don't search again. Safe to
+	 * call from any thread, even before findMove(..) is.
+	 */
+	public void abort() {
+		mStop.cancel();
+	}
+
+	/**
+	 * @return the number of games played out by the last call to
+	 *         findMove(..).
+	 */
+	public int getPlayoutCount() {
+		return mPlayouts;
+	}
+
+	public long getPlayoutsPerSecond() {
+		return (mElapsedNanos == 0) ? 0 : mPlayouts * 1000000000L
+				/ mElapsedNanos;
+	}
+
+	/**
+	 * @return the number of positions in the tree.
+	 */
+	public int getTreeSize() {
+		return mNodeCount;
+	}
+
+	public long getElapsedMillis() {
+		return mElapsedNanos / 1000000;
+	}
+
+	/*
+	 * Walk down the tree, play the rest of the game at random, then count the
+	 * result along the path and take the moves back.
+	 */
+	private void playout() {
+
+		int node = 0;
+		int depth = 0;
+		mPath[0] = node;
+
+		while (mFirstChild[node] != NOT_EXPANDED && mChildCount[node] > 0
+				&& depth < MAX_TREE_DEPTH) {
+
+			node = select(node);
+			Move move = mTreeMoves[depth];
+			setMove(node, move);
+
+			GameState mover = mGame.getGameState();
+			if (mGame.apply(move) != TurnResult.SUCCESS)
+				break;
+			mPath[++depth] = node;
+			mMovers[depth] = mover;
+
+			if (mVisits[node] + 1 == EXPAND_VISITS)
+				expand(node);
+		}
+
+		int played = playRandomly();
+		GameResult result = result();
+		for (int i = played - 1; i >= 0; --i) {
+			mGame.undo(mPlayoutMoves[i]);
+		}
+
+		for (int i = depth; i > 0; --i) {
+			node = mPath[i];
+			++mVisits[node];
+			mScores[node] += score(result, mMovers[i]);
+			mGame.undo(mTreeMoves[i - 1]);
+		}
+		++mVisits[0];
+	}
+
+	/*
+	 * The child of node with the best UCT value. Untried children come first,
+	 * in the order they were generated.
+	 */
+	private int select(int node) {
+
+		int first = mFirstChild[node];
+		int count = mChildCount[node];
+		float logVisits = (float) Math.log(Math.max(1, mVisits[node]));
+
+		int best = first;
+		float bestValue = -1;
+		for (int child = first; child < first + count; ++child) {
+			int visits = mVisits[child];
+			if (visits == 0)
+				return child;
+
+			float value = mScores[child] / (2f * visits) + EXPLORATION
+					* (float) Math.sqrt(logVisits / visits);
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+
+		return best;
+	}
+
+	/*
+	 * Add the moves at the current position, which is node's, as its
+	 * children, if there is room in the tree.
+	 */
+	private void expand(int node) {
+
+		if (mGame.getGameState() == GameState.GAME_OVER)
+			return;
+
+		int first = mNodeCount;
+		int firstTile = mTileCount;
+
+		// A position is expanded fully or not at all
+		mGenerator.restart();
+		while (mGenerator.next()) {
+			int length = mGenerator.getLength();
+			if (!addChild(length)) {
+				mNodeCount = first;
+				mTileCount = firstTile;
+				return;
+			}
+			for (int i = 0; i < length; ++i) {
+				mTiles[mTileCount++] = (byte) mGenerator.getTile(i);
+			}
+		}
+
+		// Passing is always possible
+		if (!addChild(0)) {
+			mNodeCount = first;
+			mTileCount = firstTile;
+			return;
+		}
+
+		mFirstChild[node] = first;
+		mChildCount[node] = mNodeCount - first;
+	}
+
+	/*
+	 * Add a position to the tree, with room for length tiles. Returns false
+	 * if the tree is full.
+	 */
+	private boolean addChild(int length) {
+
+		if (mNodeCount == mCapacity || mTileCount + length > mTiles.length)
+			return false;
+
+		int child = mNodeCount++;
+		mFirstChild[child] = NOT_EXPANDED;
+		mChildCount[child] = 0;
+		mVisits[child] = 0;
+		mScores[child] = 0;
+		mTileStarts[child] = mTileCount;
+		mLengths[child] = (byte) length;
+		return true;
+	}
+
+	private void setMove(int node, Move move) {
+		int start = mTileStarts[node];
+		int length = mLengths[node];
+		for (int i = 0; i < length; ++i) {
+			mMoveTiles[i] = mTiles[start + i];
+		}
+		move.set(mMoveTiles, length);
+	}
+
+	/*
+	 * Play random words until the game ends, or the playout gets too long.
+	 * Returns the number of moves played, which are in mPlayoutMoves.
+	 */
+	private int playRandomly() {
+
+		int played = 0;
+		while (played < MAX_PLAYOUT
+				&& mGame.getGameState() != GameState.GAME_OVER) {
+
+			Move move = mPlayoutMoves[played];
+			if (!playRandomWord(move)) {
+				// Nothing left to play, so pass
+				move.set(mMoveTiles, 0);
+				mGame.apply(move);
+			}
+			++played;
+		}
+
+		return played;
+	}
+
+	/*
+	 * Try a few words at random, then each word in turn from a random one,
+	 * until one can be played. Returns false if none can.
+	 */
+	private boolean playRandomWord(Move move) {
+
+		if (mWordCount == 0)
+			return false;
+
+		for (int i = 0; i < RANDOM_TRIES; ++i) {
+			if (playWord(mRandom.nextInt(mWordCount), move))
+				return true;
+		}
+
+		int start = mRandom.nextInt(mWordCount);
+		for (int i = 1; i < mWordCount; ++i) {
+			if (playWord((start + i) % mWordCount, move))
+				return true;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Play a word from the board on tiles chosen at random among those
+	 * showing its letters.
+	 */
+	private boolean playWord(int word, Move move) {
+
+		int start = mWordStarts[word];
+		int length = mWordStarts[word + 1] - start;
+		int used = 0;
+
+		for (int i = 0; i < length; ++i) {
+
+			int tiles = mLetterTiles[mWordLetters[start + i] - 'A'] & ~used;
+			for (int skip = mRandom.nextInt(Integer.bitCount(tiles)); skip > 0; --skip) {
+				tiles &= tiles - 1;
+			}
+
+			int tile = Integer.numberOfTrailingZeros(tiles);
+			used |= 1 << tile;
+			mMoveTiles[i] = tile;
+		}
+
+		move.set(mMoveTiles, length);
+		return mGame.apply(move) == TurnResult.SUCCESS;
+	}
+
+	/*
+	 * The result of the game as it stands, by tile count if it isn't over.
+	 */
+	private GameResult result() {
+
+		if (mGame.getGameState() == GameState.GAME_OVER)
+			return mGame.getResult();
+
+		int lead = Integer.bitCount(mGame.getOwnedTiles(GameModel.PLAYER1))
+				- Integer.bitCount(mGame.getOwnedTiles(GameModel.PLAYER2));
+		return (lead > 0) ? GameResult.PLAYER1_WIN
+				: (lead < 0) ? GameResult.PLAYER2_WIN : GameResult.DRAW;
+	}
+
+	/*
+	 * The result in half points for the player whose turn it was.
+	 */
+	private static int score(GameResult result, GameState mover) {
+
+		if (result == GameResult.DRAW)
+			return 1;
+
+		boolean player1 = (mover == GameState.PLAYER1_TURN);
+		return (player1 == (result == GameResult.PLAYER1_WIN)) ? 2 : 0;
+	}
+
+}
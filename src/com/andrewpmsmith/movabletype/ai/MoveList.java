@@ -0,0 +1,135 @@
+package com.andrewpmsmith.movabletype.ai;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+
+/**
+ * The moves at one position, held in flat arrays and ordered for search.
+ * The pass comes last, with no tiles. A position's moves are always
+ * generated in the same order, so a move is known to the transposition
+ * table, and to the threads of a search, by its index.
+ */
+final class MoveList {
+
+	// Move scores range from 0 to two for every tile
+	private static final int MAX_SWING = GameModel.GRID_ITEMS * 2;
+
+	// Moves that finish the game are tried before any other
+	private static final int FINISHING_SWING = MAX_SWING + 1;
+
+	int mCount;
+	int[] mOrder = new int[64];
+	int[] mSwings = new int[64];
+	int[] mStarts = new int[65];
+	int[] mTiles = new int[256];
+
+	private final int[] mBucketStarts = new int[FINISHING_SWING + 2];
+
+	void generate(MoveGenerator generator, int firstMove) {
+		generate(generator, firstMove, 0);
+	}
+
+	/**
+	 * @param unplayedTiles
+	 *            if not 0, moves covering all of these tiles, which end the
+	 *            game, are ordered first.
+	 */
+	void generate(MoveGenerator generator, int firstMove, int unplayedTiles) {
+
+		mCount = 0;
+		generator.restart();
+		while (generator.next()) {
+			int length = generator.getLength();
+			int start = append(length, generator.getSwing());
+			int mask = 0;
+			for (int i = 0; i < length; ++i) {
+				mTiles[start + i] = generator.getTile(i);
+				mask |= 1 << generator.getTile(i);
+			}
+			if (unplayedTiles != 0 && (mask & unplayedTiles) == unplayedTiles)
+				mSwings[mCount - 1] = FINISHING_SWING;
+		}
+
+		// Passing scores nothing and plays no word
+		append(0, 0);
+
+		order(firstMove);
+	}
+
+	/*
+	 * Order the moves by swing, highest first, then move firstMove to
+	 * the front. Swings are small, so a counting sort is used. It keeps
+	 * moves with the same swing in the order they were generated, so the
+	 * pass comes after the words.
+	 */
+	private void order(int firstMove) {
+
+		for (int i = 0; i < mBucketStarts.length; ++i) {
+			mBucketStarts[i] = 0;
+		}
+		for (int i = 0; i < mCount; ++i) {
+			++mBucketStarts[FINISHING_SWING - mSwings[i] + 1];
+		}
+		for (int i = 1; i < mBucketStarts.length; ++i) {
+			mBucketStarts[i] += mBucketStarts[i - 1];
+		}
+		for (int i = 0; i < mCount; ++i) {
+			mOrder[mBucketStarts[FINISHING_SWING - mSwings[i]]++] = i;
+		}
+
+		if (firstMove < 0 || firstMove >= mCount)
+			return;
+
+		int i = 0;
+		while (mOrder[i] != firstMove) {
+			++i;
+		}
+		System.arraycopy(mOrder, 0, mOrder, 1, i);
+		mOrder[0] = firstMove;
+	}
+
+	/*
+	 * Add a move, returning where its tiles go in mTiles.
+	 */
+	private int append(int length, int swing) {
+
+		if (mCount == mOrder.length) {
+			int capacity = mCount * 2;
+			mOrder = grow(mOrder, capacity);
+			mSwings = grow(mSwings, capacity);
+			mStarts = grow(mStarts, capacity + 1);
+		}
+
+		int start = mStarts[mCount];
+		if (start + length > mTiles.length)
+			mTiles = grow(mTiles, Math.max(mTiles.length * 2, start
+					+ length));
+
+		mSwings[mCount] = swing;
+		mStarts[mCount + 1] = start + length;
+		++mCount;
+
+		return start;
+	}
+
+	void set(int index, Move move) {
+		move.set(mTiles, mStarts[index], mStarts[index + 1]
+				- mStarts[index]);
+	}
+
+	int copyTiles(int index, int[] tiles) {
+		int start = mStarts[index];
+		int length = mStarts[index + 1] - start;
+		System.arraycopy(mTiles, start, tiles, 0, length);
+		return length;
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, Math.min(array.length,
+				capacity));
+		return grown;
+	}
+
+}
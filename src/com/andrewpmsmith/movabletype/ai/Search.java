@@ -0,0 +1,490 @@
+package com.andrewpmsmith.movabletype.ai;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+
+/**
+ * Chooses a move for the player whose turn it is, using alpha-beta search
+ * with iterative deepening.
+ *
+ * The search plays moves on the game with GameModel.apply(..) and takes them
+ * back with undo(..), so the game must not be used by anything else while a
+ * search is running. Give it a copy of the game being played.
+ *
+ * The moves at each position are the words from a MoveGenerator, each on
+ * the tiles that score most straight away, and a pass. They are tried in
+ * order of that score, after the best move found for the position by an
+ * earlier search, so that good moves are searched first and cut off the
+ * rest. Positions are cached in a transposition table by Zobrist hash, so a
+ * position reached by playing the same words in a different order is only
+ * searched once, and the last search's best moves guide the next deeper one.
+ *
+ * Each search to a given depth is started only if there is time, and is
+ * abandoned when the time runs out, in which case the move from the
+ * deepest search that finished is played.
+ *
+ * A search can use several threads, each playing moves on its own copy of
+ * the game. The first move at the root is searched alone, to find a value
+ * for the rest to beat, and then the threads take the remaining root moves
+ * in turn, sharing the transposition table. Which of two equally good moves
+ * is played can then depend on timing, but a search on one thread is always
+ * the same.
+ */
+public final class Search {
+
+	// The value of a win, less the number of moves taken to reach it, so that
+	// quicker wins are preferred
+	public static final int WIN = 1000000;
+
+	private static final int INFINITY = WIN * 2;
+	private static final int MAX_DEPTH = 32;
+	private static final int TABLE_SIZE_LOG2 = 16;
+
+	// How often the clock is checked, in positions
+	private static final int CLOCK_INTERVAL = 256;
+
+	// Evaluation weights. A surrounded tile can't be taken back next turn.
+	private static final int TILE_VALUE = 10;
+	private static final int SURROUNDED_VALUE = 4;
+
+	private final TranspositionTable mTable = new TranspositionTable(
+			TABLE_SIZE_LOG2);
+
+	// The first worker runs on the thread calling findMove(..), the rest on
+	// mExecutor
+	private final Worker[] mWorkers;
+	private final Executor mExecutor;
+
+	private final int[] mBestTiles = new int[GameModel.GRID_ITEMS];
+	private int mBestLength;
+
+	private int mRootPlayer;
+	private long mDeadline;
+	private final StopFlag mStop = new StopFlag();
+
+	// The root of the search to the current depth, shared by the workers
+	private MoveList mRootMoves;
+	private int mRootDepth;
+	private final AtomicInteger mNextRootMove = new AtomicInteger();
+
+	// The best root move so far, where it came in the order searched, and
+	// its value, guarded by mRootLock
+	private final Object mRootLock = new Object();
+	private int mRootBestMove;
+	private int mRootBestPosition;
+	private int mRootBestValue;
+
+	private long mNodes;
+	private long mElapsedNanos;
+	private int mDepth;
+	private int mValue;
+
+	/**
+	 * Search on the calling thread alone.
+	 */
+	public Search(GameModel game) {
+		this(new GameModel[] { game }, null);
+	}
+
+	/**
+	 * Search with one thread for each game.
+	 *
+	 * @param games
+	 *            copies of the same position. The first is searched on the
+	 *            thread calling findMove(..).
+	 * @param executor
+	 *            runs the threads searching the other games. It must be able
+	 *            to run all of them at once. Not needed for a single game.
+	 */
+	public Search(GameModel[] games, Executor executor) {
+
+		if (games.length > 1 && executor == null)
+			throw new IllegalArgumentException("No executor for the threads");
+
+		mExecutor = executor;
+		mWorkers = new Worker[games.length];
+		for (int i = 0; i < games.length; ++i) {
+			mWorkers[i] = new Worker(games[i]);
+		}
+	}
+
+	/**
+	 * Search until the time is up or maxDepth has been searched.
+	 *
+	 * @return the best move found, which is a pass if there is nothing else
+	 *         to play.
+	 */
+	public Move findMove(long budgetMillis, int maxDepth) {
+
+		long start = System.nanoTime();
+		mDeadline = start + budgetMillis * 1000000;
+		mStop.start();
+		mDepth = 0;
+		mValue = 0;
+		mBestLength = 0;
+		mTable.clear();
+		for (Worker worker : mWorkers) {
+			worker.mNodes = 0;
+		}
+
+		GameModel game = mWorkers[0].mGame;
+		if (game.getGameState() != GameState.GAME_OVER) {
+			mRootPlayer = (game.getGameState() == GameState.PLAYER1_TURN)
+					? GameModel.PLAYER1 : GameModel.PLAYER2;
+			deepen(game.getHash(), Math.min(maxDepth, MAX_DEPTH));
+		}
+
+		mNodes = 0;
+		for (Worker worker : mWorkers) {
+			mNodes += worker.mNodes;
+		}
+		mElapsedNanos = System.nanoTime() - start;
+
+		return new Move(mBestTiles, mBestLength);
+	}
+
+	private void deepen(long hash, int maxDepth) {
+
+		for (int depth = 1; depth <= maxDepth; ++depth) {
+
+			int value = searchRoot(depth, hash);
+			if (mStop.isStopped())
+				break;
+
+			mBestLength = mRootMoves.copyTiles(mRootBestMove, mBestTiles);
+			mDepth = depth;
+			mValue = value;
+
+			// No point going deeper once the end of the game is in sight
+			if (Math.abs(value) > WIN - MAX_DEPTH)
+				break;
+		}
+
+		// Even a search one move deep ran out of time, so play the word
+		// worth most straight away
+		if (mDepth == 0) {
+			MoveGenerator generator = mWorkers[0].mGenerators[0];
+			generator.restart();
+			int bestSwing = -1;
+			while (generator.next()) {
+				if (generator.getSwing() > bestSwing) {
+					bestSwing = generator.getSwing();
+					mBestLength = generator.getLength();
+					for (int i = 0; i < mBestLength; ++i) {
+						mBestTiles[i] = generator.getTile(i);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop the search as soon as possible, and don't search again. Safe to
+	 * call from any thread, even before findMove(..) is.
+	 */
+	public void abort() {
+		mStop.cancel();
+	}
+
+	/**
+	 * @return the depth of the last search that finished, or 0 if none did.
+	 */
+	public int getDepth() {
+		return mDepth;
+	}
+
+	/**
+	 * @return the value of the move found, for the player who is to play it.
+	 */
+	public int getValue() {
+		return mValue;
+	}
+
+	/**
+	 * @return the number of positions visited by the last call to
+	 *         findMove(..), on all threads.
+	 */
+	public long getNodeCount() {
+		return mNodes;
+	}
+
+	/**
+	 * @return how long the last call to findMove(..) took.
+	 */
+	public long getElapsedMillis() {
+		return mElapsedNanos / 1000000;
+	}
+
+	/**
+	 * @return the positions visited per second by the last call to
+	 *         findMove(..), on all threads.
+	 */
+	public long getNodesPerSecond() {
+		return (mElapsedNanos == 0) ? 0 : mNodes * 1000000000L
+				/ mElapsedNanos;
+	}
+
+	public int getThreadCount() {
+		return mWorkers.length;
+	}
+
+	/**
+	 * @return how good the position is for player, without searching. Tiles
+	 *         count for most, and surrounded tiles a little more. The end of
+	 *         the game is worth WIN, less the number of moves it took, plus
+	 *         the final score.
+	 */
+	public static int evaluate(GameModel game, int player, int ply) {
+
+		int opponent = (player == GameModel.PLAYER1) ? GameModel.PLAYER2
+				: GameModel.PLAYER1;
+		int mine = game.getOwnedTiles(player);
+		int theirs = game.getOwnedTiles(opponent);
+		int lead = Integer.bitCount(mine) - Integer.bitCount(theirs);
+
+		if (game.getGameState() == GameState.GAME_OVER) {
+			if (lead > 0)
+				return WIN - ply + lead;
+			if (lead < 0)
+				return -WIN + ply + lead;
+			return 0;
+		}
+
+		int surrounded = game.getSurroundedTiles();
+		return lead * TILE_VALUE
+				+ (Integer.bitCount(mine & surrounded) - Integer
+						.bitCount(theirs & surrounded)) * SURROUNDED_VALUE;
+	}
+
+	/*
+	 * Search the root to depth on every thread: returns the value of the best
+	 * move, which is left in mRootBestMove, or 0 if the search was abandoned.
+	 */
+	private int searchRoot(int depth, long hash) {
+
+		Worker main = mWorkers[0];
+
+		long result = mTable.probe(hash);
+		int hashMove = (result == 0) ? -1 : TranspositionTable
+				.getBestMove(result);
+
+		MoveList moves = main.mMoveLists[0];
+		moves.generate(main.mGenerators[0], hashMove);
+
+		mRootMoves = moves;
+		mRootDepth = depth;
+		mRootBestMove = -1;
+		mRootBestPosition = -1;
+		mRootBestValue = -INFINITY;
+
+		// The first move is usually the best, and gives the others a value
+		// to beat, so it is searched before the other threads start
+		mNextRootMove.set(1);
+		main.searchRootMove(0);
+
+		int helpers = mWorkers.length - 1;
+		final CountDownLatch finished = new CountDownLatch(helpers);
+		for (int i = 1; i <= helpers; ++i) {
+			final Worker worker = mWorkers[i];
+			mExecutor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						worker.searchRootMoves();
+					} finally {
+						finished.countDown();
+					}
+				}
+
+			});
+		}
+
+		main.searchRootMoves();
+
+		boolean interrupted = false;
+		while (finished.getCount() > 0) {
+			try {
+				finished.await();
+			} catch (InterruptedException e) {
+				// Stop the other threads, but wait for them to let go of
+				// their games
+				mStop.stop();
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		if (mStop.isStopped())
+			return 0;
+
+		mTable.store(hash, depth, mRootBestValue, TranspositionTable.EXACT,
+				mRootBestMove);
+
+		return mRootBestValue;
+	}
+
+	/*
+	 * Take the value of the root move at position in the search order, found
+	 * with alpha as the value to beat.
+	 */
+	private void reportRootMove(int position, int index, int alpha, int value) {
+
+		// Not better than alpha, so only an upper bound on its value
+		if (value <= alpha)
+			return;
+
+		synchronized (mRootLock) {
+			if (value > mRootBestValue
+					|| (value == mRootBestValue && position < mRootBestPosition)) {
+				mRootBestValue = value;
+				mRootBestPosition = position;
+				mRootBestMove = index;
+			}
+		}
+	}
+
+	private int getRootAlpha() {
+		synchronized (mRootLock) {
+			return mRootBestValue;
+		}
+	}
+
+	/*
+	 * The state of one thread of the search.
+	 */
+	private final class Worker {
+
+		final GameModel mGame;
+
+		// One of each per ply
+		final MoveGenerator[] mGenerators = new MoveGenerator[MAX_DEPTH];
+		final MoveList[] mMoveLists = new MoveList[MAX_DEPTH];
+		final Move[] mMoves = new Move[MAX_DEPTH];
+
+		long mNodes;
+
+		Worker(GameModel game) {
+			mGame = game;
+			for (int i = 0; i < MAX_DEPTH; ++i) {
+				mGenerators[i] = new MoveGenerator(game);
+				mMoveLists[i] = new MoveList();
+				mMoves[i] = new Move();
+			}
+		}
+
+		void searchRootMoves() {
+
+			int count = mRootMoves.mCount;
+			while (!mStop.isStopped()) {
+				int position = mNextRootMove.getAndIncrement();
+				if (position >= count)
+					break;
+				searchRootMove(position);
+			}
+		}
+
+		void searchRootMove(int position) {
+
+			MoveList moves = mRootMoves;
+			int index = moves.mOrder[position];
+			Move move = mMoves[0];
+
+			if (!play(moves, index, move))
+				return;
+
+			int alpha = getRootAlpha();
+			int value = -search(mRootDepth - 1, 1, -INFINITY, -alpha);
+
+			mGame.undo(move);
+
+			if (!mStop.isStopped())
+				reportRootMove(position, index, alpha, value);
+		}
+
+		/*
+		 * Negamax alpha-beta: returns the value of the position for the
+		 * player to move, or 0 if the search was abandoned.
+		 */
+		private int search(int depth, int ply, int alpha, int beta) {
+
+			if (++mNodes % CLOCK_INTERVAL == 0
+					&& System.nanoTime() > mDeadline)
+				mStop.stop();
+			if (mStop.isStopped())
+				return 0;
+
+			if (depth == 0 || mGame.getGameState() == GameState.GAME_OVER) {
+				// Every move, passes included, hands the turn over, which
+				// tells whose turn it would be once the game is over
+				int player = (ply % 2 == 0) ? mRootPlayer
+						: GameModel.PLAYER1 + GameModel.PLAYER2 - mRootPlayer;
+				return evaluate(mGame, player, ply);
+			}
+
+			long hash = mGame.getHash();
+			int originalAlpha = alpha;
+			long result = mTable.probe(hash);
+			if (TranspositionTable.isCutoff(result, depth, alpha, beta))
+				return TranspositionTable.getValue(result);
+			alpha = TranspositionTable.narrowAlpha(result, depth, alpha);
+			beta = TranspositionTable.narrowBeta(result, depth, beta);
+			int hashMove = TranspositionTable.getBestMove(result);
+
+			MoveList moves = mMoveLists[ply];
+			moves.generate(mGenerators[ply], hashMove);
+
+			Move move = mMoves[ply];
+			int best = -INFINITY;
+			int bestMove = -1;
+
+			for (int i = 0; i < moves.mCount; ++i) {
+
+				int index = moves.mOrder[i];
+				if (!play(moves, index, move))
+					continue;
+
+				int value = -search(depth - 1, ply + 1, -beta, -alpha);
+
+				mGame.undo(move);
+
+				if (mStop.isStopped())
+					return 0;
+
+				if (value > best) {
+					best = value;
+					bestMove = index;
+				}
+				if (value > alpha)
+					alpha = value;
+				if (alpha >= beta)
+					break;
+			}
+
+			mTable.store(hash, depth, best,
+					TranspositionTable.boundOf(best, originalAlpha, beta),
+					bestMove);
+
+			return best;
+		}
+
+		/*
+		 * Apply a move from the list. Returns false if the move can't be
+		 * played.
+		 */
+		private boolean play(MoveList moves, int index, Move move) {
+			moves.set(index, move);
+			return mGame.apply(move) == TurnResult.SUCCESS;
+		}
+
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.andrewpmsmith.movabletype.ai;
+
+/**
+ * Tells a search when to stop: when its own time runs out, or when another
+ * thread aborts it.
+ *
+ * The search calls start() as it begins, which clears a stop for running
+ * out of time on an earlier call. An abort is never cleared. cancel() sets
+ * the abort before the stop, and start() clears the stop before it looks at
+ * the abort. So however the two calls interleave, an abort made before or
+ * during start() still stops the search, and a search that has been
+ * aborted won't run again.
+ */
+final class StopFlag {
+
+	private volatile boolean mStopped;
+	private volatile boolean mCancelled;
+
+	/**
+	 * Called by the search as it begins.
+	 */
+	void start() {
+		mStopped = false;
+		if (mCancelled)
+			mStopped = true;
+	}
+
+	/**
+	 * Stop this run of the search, e.g. when its time is up.
+	 */
+	void stop() {
+		mStopped = true;
+	}
+
+	/**
+	 * Stop the search for good. Safe to call from any thread.
+	 */
+	void cancel() {
+		mCancelled = true;
+		mStopped = true;
+	}
+
+	boolean isStopped() {
+		return mStopped;
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.andrewpmsmith.movabletype.ai;
+
+/**
+ * A fixed size cache of search results, indexed by the Zobrist hash of the
+ * position they were found for.
+ *
+ * Entries are held in parallel primitive arrays, so the table allocates
+ * nothing once created. Each hash maps to a single slot. A new result
+ * replaces the one in its slot unless that was searched deeper for another
+ * position, so the most expensive results are kept.
+ *
+ * The table can be shared by searches on several threads without locking.
+ * Each result is packed into one long, and stored beside the position's hash
+ * XORed with it. A probe only returns a result if the two XOR back to the
+ * hash it asked for, so a result torn by two threads writing the same slot
+ * at once, or a stale half seen by another thread, is treated as missing
+ * rather than returned for the wrong position.
+ */
+public final class TranspositionTable {
+
+	public static final int EXACT = 0;
+	// The value is at least this, as the search was cut off
+	public static final int LOWER_BOUND = 1;
+	// The value is at most this, as no move reached alpha
+	public static final int UPPER_BOUND = 2;
+
+	// A result is laid out as: value, 32 bits; best move + 1, 22 bits;
+	// depth, 7 bits; bound, 2 bits; and a bit that is always set, so that
+	// an empty slot holds 0
+	private static final int MOVE_SHIFT = 32;
+	private static final int MOVE_MASK = (1 << 22) - 1;
+	private static final int DEPTH_SHIFT = 54;
+	private static final int DEPTH_MASK = (1 << 7) - 1;
+	private static final int BOUND_SHIFT = 61;
+	private static final int BOUND_MASK = 3;
+	private static final long PRESENT = 1L << 63;
+
+	private final int mMask;
+	private final long[] mChecks;
+	private final long[] mResults;
+
+	/**
+	 * @param sizeLog2
+	 *            the table holds 2 to the power of this many entries.
+	 */
+	public TranspositionTable(int sizeLog2) {
+
+		int size = 1 << sizeLog2;
+		mMask = size - 1;
+		mChecks = new long[size];
+		mResults = new long[size];
+	}
+
+	/**
+	 * @return the result stored for hash, to be read with getValue(..) and
+	 *         the like, or 0 if it isn't in the table.
+	 */
+	public long probe(long hash) {
+
+		int slot = (int) hash & mMask;
+		long result = mResults[slot];
+		return (result != 0 && (mChecks[slot] ^ result) == hash) ? result : 0;
+	}
+
+	public static int getValue(long result) {
+		return (int) result;
+	}
+
+	public static int getDepth(long result) {
+		return (int) (result >>> DEPTH_SHIFT) & DEPTH_MASK;
+	}
+
+	public static int getBound(long result) {
+		return (int) (result >>> BOUND_SHIFT) & BOUND_MASK;
+	}
+
+	/**
+	 * @return the index of the best move found, or -1 if there was none.
+	 */
+	public static int getBestMove(long result) {
+		return ((int) (result >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+	}
+
+	/**
+	 * @return true if result, found for a search at least depth deep, settles
+	 *         the value of a position searched with window (alpha, beta).
+	 *         The value is then getValue(result).
+	 */
+	public static boolean isCutoff(long result, int depth, int alpha,
+			int beta) {
+
+		if (result == 0 || getDepth(result) < depth)
+			return false;
+
+		int value = getValue(result);
+		switch (getBound(result)) {
+		case EXACT:
+			return true;
+		case LOWER_BOUND:
+			return value >= beta;
+		default:
+			return value <= alpha;
+		}
+	}
+
+	/**
+	 * @return alpha, raised to the value of result if that is a deep enough
+	 *         lower bound.
+	 */
+	public static int narrowAlpha(long result, int depth, int alpha) {
+		return (result != 0 && getDepth(result) >= depth
+				&& getBound(result) == LOWER_BOUND) ? Math.max(alpha,
+				getValue(result)) : alpha;
+	}
+
+	/**
+	 * @return beta, lowered to the value of result if that is a deep enough
+	 *         upper bound.
+	 */
+	public static int narrowBeta(long result, int depth, int beta) {
+		return (result != 0 && getDepth(result) >= depth
+				&& getBound(result) == UPPER_BOUND) ? Math.min(beta,
+				getValue(result)) : beta;
+	}
+
+	/**
+	 * @return the bound on a position's real value that value is, when it
+	 *         was found by searching with window (alpha, beta).
+	 */
+	public static int boundOf(int value, int alpha, int beta) {
+		return (value <= alpha) ? UPPER_BOUND : (value >= beta) ? LOWER_BOUND
+				: EXACT;
+	}
+
+	/**
+	 * @param bestMove
+	 *            the index of the best move among the moves generated for
+	 *            the position, or -1 if there is none.
+	 */
+	public void store(long hash, int depth, int value, int bound, int bestMove) {
+
+		int slot = (int) hash & mMask;
+		long old = mResults[slot];
+		if ((mChecks[slot] ^ old) != hash && getDepth(old) > depth)
+			return;
+
+		// A move too far down the list to be stored is simply forgotten
+		long move = (bestMove + 1 > MOVE_MASK) ? 0 : bestMove + 1;
+
+		long result = PRESENT
+				| ((long) bound << BOUND_SHIFT)
+				| ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+				| (move << MOVE_SHIFT)
+				| (value & 0xffffffffL);
+
+		mResults[slot] = result;
+		mChecks[slot] = hash ^ result;
+	}
+
+	public void clear() {
+		for (int i = 0; i <= mMask; ++i) {
+			mChecks[i] = 0;
+			mResults[i] = 0;
+		}
+	}
+
+}
@@ -0,0 +1,263 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An index of the dictionary keyed by each word's letters in sorted order, so
+ * that every word using exactly a given set of letters can be found with one
+ * binary search. For example the key AELST leads to LEAST, SLATE, STALE,
+ * STEAL, TALES and TEALS.
+ *
+ * Rather than a map of lists, the keys and words are held in flat arrays. The
+ * distinct keys are stored in sorted order, and the words sharing a key are
+ * stored together in the same order, so key i owns the words from
+ * mGroupStarts[i] up to mGroupStarts[i + 1]. Instances are immutable and safe
+ * to share between threads.
+ */
+public class AnagramIndex {
+
+	private static final char FIRST_CHAR = 'A';
+	private static final int ALPHABET_SIZE = 26;
+
+	private final int mKeyCount;
+	private final int mWordCount;
+
+	// Key i is mKeyLetters[mKeyOffsets[i]] up to mKeyLetters[mKeyOffsets[i + 1]]
+	private final char[] mKeyLetters;
+	private final int[] mKeyOffsets;
+	private final int[] mGroupStarts;
+
+	// The words, grouped by key and laid out the same way as the keys
+	private final char[] mWordLetters;
+	private final int[] mWordOffsets;
+
+	/**
+	 * Index a list of words. Words that are not upper case A to Z are skipped,
+	 * as are duplicates.
+	 */
+	public AnagramIndex(List<String> words) {
+
+		List<String> valid = new ArrayList<String>(words.size());
+		int letterTotal = 0;
+		for (String word : words) {
+			if (DawgBuilder.isValidWord(word)) {
+				valid.add(word);
+				letterTotal += word.length();
+			}
+		}
+
+		final String[] sortedWords = valid.toArray(new String[valid.size()]);
+		final String[] keys = new String[sortedWords.length];
+		for (int i = 0; i < sortedWords.length; ++i) {
+			keys[i] = sortLetters(sortedWords[i]);
+		}
+
+		// Group the words by key, alphabetically within each group
+		Integer[] order = new Integer[sortedWords.length];
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int byKey = keys[a].compareTo(keys[b]);
+				return (byKey != 0) ? byKey : sortedWords[a]
+						.compareTo(sortedWords[b]);
+			}
+		});
+
+		char[] keyLetters = new char[letterTotal];
+		int[] keyOffsets = new int[order.length + 1];
+		int[] groupStarts = new int[order.length + 1];
+		char[] wordLetters = new char[letterTotal];
+		int[] wordOffsets = new int[order.length + 1];
+
+		int keyCount = 0;
+		int wordCount = 0;
+		String previousKey = null;
+		String previousWord = null;
+
+		for (Integer i : order) {
+
+			String key = keys[i];
+			String word = sortedWords[i];
+
+			if (word.equals(previousWord))
+				continue;
+
+			if (!key.equals(previousKey)) {
+				int offset = keyOffsets[keyCount];
+				key.getChars(0, key.length(), keyLetters, offset);
+				groupStarts[keyCount] = wordCount;
+				keyOffsets[++keyCount] = offset + key.length();
+				previousKey = key;
+			}
+
+			int offset = wordOffsets[wordCount];
+			word.getChars(0, word.length(), wordLetters, offset);
+			wordOffsets[++wordCount] = offset + word.length();
+			previousWord = word;
+
+		}
+		groupStarts[keyCount] = wordCount;
+
+		mKeyCount = keyCount;
+		mWordCount = wordCount;
+		mKeyLetters = keyLetters;
+		mKeyOffsets = keyOffsets;
+		mGroupStarts = groupStarts;
+		mWordLetters = wordLetters;
+		mWordOffsets = wordOffsets;
+
+	}
+
+	/**
+	 * @return every word that uses exactly the given letters, in any order.
+	 *         The list is empty if there are none.
+	 */
+	public List<String> getAnagrams(CharSequence letters) {
+
+		if (letters == null)
+			return Collections.emptyList();
+
+		char[] key = new char[letters.length()];
+		for (int i = 0; i < key.length; ++i) {
+			key[i] = letters.charAt(i);
+		}
+		Arrays.sort(key);
+
+		return getWords(findKey(key, key.length));
+	}
+
+	/**
+	 * @param letterCounts
+	 *            the number of each letter to use, indexed from 'A'.
+	 * @return every word that uses exactly these letters.
+	 */
+	public List<String> getAnagrams(int[] letterCounts) {
+
+		int length = 0;
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			length += letterCounts[i];
+		}
+
+		char[] key = new char[length];
+		int k = 0;
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			for (int j = 0; j < letterCounts[i]; ++j) {
+				key[k++] = (char) (FIRST_CHAR + i);
+			}
+		}
+
+		return getWords(findKey(key, length));
+	}
+
+	/**
+	 * Find the key made up of the first length letters of sortedLetters,
+	 * which must already be in ascending order.
+	 *
+	 * @return the index of the key, or -1 if no word uses exactly these
+	 *         letters.
+	 */
+	public int findKey(char[] sortedLetters, int length) {
+
+		int low = 0;
+		int high = mKeyCount - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int order = compareKey(mid, sortedLetters, length);
+			if (order < 0)
+				low = mid + 1;
+			else if (order > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return the words filed under key, or an empty list if key is -1.
+	 */
+	public List<String> getWords(int key) {
+
+		if (key < 0)
+			return Collections.emptyList();
+
+		List<String> words = new ArrayList<String>(getGroupSize(key));
+		for (int i = mGroupStarts[key]; i < mGroupStarts[key + 1]; ++i) {
+			words.add(getWord(i));
+		}
+
+		return words;
+	}
+
+	/**
+	 * @return the number of words filed under key.
+	 */
+	public int getGroupSize(int key) {
+		return mGroupStarts[key + 1] - mGroupStarts[key];
+	}
+
+	public String getKey(int key) {
+		return new String(mKeyLetters, mKeyOffsets[key], mKeyOffsets[key + 1]
+				- mKeyOffsets[key]);
+	}
+
+	public String getWord(int index) {
+		return new String(mWordLetters, mWordOffsets[index],
+				mWordOffsets[index + 1] - mWordOffsets[index]);
+	}
+
+	public int getKeyCount() {
+		return mKeyCount;
+	}
+
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+	/**
+	 * @return the approximate number of bytes held by the index.
+	 */
+	public int getSizeInBytes() {
+		return (mKeyLetters.length + mWordLetters.length) * 2
+				+ (mKeyOffsets.length + mGroupStarts.length + mWordOffsets.length)
+				* 4;
+	}
+
+	/**
+	 * @return the letters of word in ascending order.
+	 */
+	public static String sortLetters(String word) {
+		char[] letters = word.toCharArray();
+		Arrays.sort(letters);
+		return new String(letters);
+	}
+
+	/*
+	 * Compare key with the first length letters of other, in the same order
+	 * as String.compareTo(..).
+	 */
+	private int compareKey(int key, char[] other, int length) {
+
+		int start = mKeyOffsets[key];
+		int keyLength = mKeyOffsets[key + 1] - start;
+		int common = Math.min(keyLength, length);
+
+		for (int i = 0; i < common; ++i) {
+			int difference = mKeyLetters[start + i] - other[i];
+			if (difference != 0)
+				return difference;
+		}
+
+		return keyLength - length;
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter over words. It can say for certain that a word is not in
+ * the set it was built from, but may wrongly report that a word is present
+ * with a probability chosen when the filter is created.
+ *
+ * Each word is hashed once to 64 bits, and the bit positions are derived
+ * from the two halves of that hash (Kirsch and Mitzenmacher), so testing a
+ * word doesn't allocate.
+ */
+public class BloomFilter {
+
+	private static final int MAGIC = 0x424C4F4D; // "BLOM"
+	private static final int FORMAT_VERSION = 1;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final long[] mBits;
+	private final long mBitCount;
+	private final int mHashCount;
+	private int mWordCount;
+
+	private BloomFilter(long[] bits, int hashCount, int wordCount) {
+		mBits = bits;
+		mBitCount = (long) bits.length * 64;
+		mHashCount = hashCount;
+		mWordCount = wordCount;
+	}
+
+	/**
+	 * Create an empty filter sized so that once expectedWords words have
+	 * been added, the chance of a false positive is falsePositiveRate.
+	 */
+	public static BloomFilter create(int expectedWords, double falsePositiveRate) {
+
+		if (expectedWords < 1)
+			expectedWords = 1;
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+			throw new IllegalArgumentException(
+					"False positive rate must be between 0 and 1");
+
+		final double ln2 = Math.log(2);
+		double bits = -expectedWords * Math.log(falsePositiveRate)
+				/ (ln2 * ln2);
+		int hashCount = Math.max(1,
+				(int) Math.round(bits / expectedWords * ln2));
+
+		return new BloomFilter(new long[(int) Math.ceil(bits / 64)],
+				hashCount, 0);
+	}
+
+	public static BloomFilter read(DataInput in) throws IOException {
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a Bloom filter");
+		if (in.readInt() != FORMAT_VERSION)
+			throw new IOException("Unsupported Bloom filter version");
+
+		int hashCount = in.readInt();
+		int wordCount = in.readInt();
+		int length = in.readInt();
+		if (hashCount < 1 || length < 1)
+			throw new IOException("Bloom filter is corrupt");
+
+		long[] bits = new long[length];
+		for (int i = 0; i < length; ++i) {
+			bits[i] = in.readLong();
+		}
+
+		return new BloomFilter(bits, hashCount, wordCount);
+	}
+
+	public void write(DataOutput out) throws IOException {
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(mHashCount);
+		out.writeInt(mWordCount);
+		out.writeInt(mBits.length);
+		for (long word : mBits) {
+			out.writeLong(word);
+		}
+	}
+
+	public void add(CharSequence word) {
+
+		long hash = hash(word);
+		long h1 = hash & 0xFFFFFFFFL;
+		long h2 = hash >>> 32;
+
+		for (int i = 0; i < mHashCount; ++i) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % mBitCount;
+			mBits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+
+		++mWordCount;
+	}
+
+	/**
+	 * @return false if word was definitely never added, true if it probably
+	 *         was.
+	 */
+	public boolean mightContain(CharSequence word) {
+
+		if (word == null)
+			return false;
+
+		long hash = hash(word);
+		long h1 = hash & 0xFFFFFFFFL;
+		long h2 = hash >>> 32;
+
+		for (int i = 0; i < mHashCount; ++i) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % mBitCount;
+			if ((mBits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+	public int getHashCount() {
+		return mHashCount;
+	}
+
+	public int getSizeInBytes() {
+		return mBits.length * 8;
+	}
+
+	/**
+	 * @return the false positive rate expected for the words added so far.
+	 */
+	public double getExpectedFalsePositiveRate() {
+		double empty = Math.exp(-(double) mHashCount * mWordCount / mBitCount);
+		return Math.pow(1 - empty, mHashCount);
+	}
+
+	/*
+	 * 64 bit FNV-1a, followed by the MurmurHash3 finaliser so that both
+	 * halves of the result are well mixed.
+	 */
+	private static long hash(CharSequence word) {
+
+		long h = FNV_OFFSET_BASIS;
+		for (int i = 0; i < word.length(); ++i) {
+			h ^= word.charAt(i);
+			h *= FNV_PRIME;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+}
@@ -0,0 +1,195 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.Random;
+
+/**
+ * Deals the letters for a new game, checking each grid against the
+ * dictionary and dealing again until it is worth playing.
+ *
+ * Grids are dealt as they always have been: four vowels on random tiles and
+ * random consonants on the rest, with Q only if there is a U. A grid is
+ * accepted if at least a minimum number of words of two or more letters can
+ * be spelt from it and, optionally, if every letter on it is in at least one
+ * of those words, so that every tile can be played. Checking a grid is a
+ * single scan of the SignatureIndex, and no words are built.
+ *
+ * Dealing stops when the time budget runs out, even if no grid has been
+ * accepted, and the best grid dealt is used instead. So a board is always
+ * ready quickly, if not always as good as asked for.
+ *
+ * The buffers for checking grids are kept from one call to the next, so a
+ * generator is best shared, as WordList.getBoardGenerator(..) does. Calls
+ * from different threads take turns.
+ */
+public final class BoardGenerator {
+
+	public static final int DEFAULT_MIN_WORDS = 300;
+	public static final long DEFAULT_BUDGET_MILLIS = 30;
+
+	private static final int NUMBER_OF_VOWELS_ON_BOARD = 4;
+	private static final String CONSONANTS = "BCDFHJKLMNPRSTVWXYZQ";
+	private static final String VOWELS = "AEIOU";
+
+	private static final int ALPHABET_SIZE = 26;
+	private static final char FIRST_CHAR = 'A';
+
+	private final SignatureIndex mIndex;
+	private final int mMinWords;
+	private final boolean mCoverEveryTile;
+	private final long mBudgetMillis;
+
+	private final int[] mLetterCounts = new int[ALPHABET_SIZE];
+	private final int[] mMatches;
+
+	// The result of the last call to check(..)
+	private int mWordCount;
+	private int mUnusedLetters;
+
+	private int mAttempts;
+
+	public BoardGenerator(SignatureIndex index) {
+		this(index, DEFAULT_MIN_WORDS, true, DEFAULT_BUDGET_MILLIS);
+	}
+
+	/**
+	 * @param minWords
+	 *            the fewest words of two or more letters a grid may have.
+	 * @param coverEveryTile
+	 *            if true, every letter on the grid must be in a word.
+	 * @param budgetMillis
+	 *            how long to keep dealing for. At least one grid is always
+	 *            dealt.
+	 */
+	public BoardGenerator(SignatureIndex index, int minWords,
+			boolean coverEveryTile, long budgetMillis) {
+		mIndex = index;
+		mMinWords = minWords;
+		mCoverEveryTile = coverEveryTile;
+		mBudgetMillis = budgetMillis;
+		mMatches = new int[index.getWordCount()];
+	}
+
+	/**
+	 * @return the letters of each tile of a new grid, indexed as in
+	 *         GameModel.
+	 */
+	public synchronized char[] generate(Random random) {
+
+		long deadline = System.nanoTime() + mBudgetMillis * 1000000;
+
+		char[] best = null;
+		int bestWords = -1;
+		boolean bestCovered = false;
+
+		mAttempts = 0;
+		do {
+			char[] grid = deal(random);
+			++mAttempts;
+
+			check(grid);
+			boolean covered = !mCoverEveryTile || mUnusedLetters == 0;
+			if (covered && mWordCount >= mMinWords)
+				return grid;
+
+			// Fall back on the grid that comes closest: one with every tile
+			// in a word, then the one with the most words
+			if (best == null || (covered && !bestCovered)
+					|| (covered == bestCovered && mWordCount > bestWords)) {
+				best = grid;
+				bestWords = mWordCount;
+				bestCovered = covered;
+			}
+
+		} while (System.nanoTime() < deadline);
+
+		return best;
+	}
+
+	/**
+	 * @return the number of grids dealt by the last call to generate(..).
+	 */
+	public synchronized int getAttempts() {
+		return mAttempts;
+	}
+
+	/**
+	 * Count the words of two or more letters that can be spelt from grid.
+	 *
+	 * @return the number of words.
+	 */
+	public synchronized int countWords(char[] grid) {
+		check(grid);
+		return mWordCount;
+	}
+
+	/**
+	 * @return true if every letter on grid is in a word of two or more
+	 *         letters.
+	 */
+	public synchronized boolean isCovered(char[] grid) {
+		check(grid);
+		return mUnusedLetters == 0;
+	}
+
+	/*
+	 * Scan the index for grid, leaving the number of words of two or more
+	 * letters in mWordCount and the letters of the grid none of them use in
+	 * mUnusedLetters.
+	 */
+	private void check(char[] grid) {
+
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			mLetterCounts[i] = 0;
+		}
+		int unused = 0;
+		for (char c : grid) {
+			++mLetterCounts[c - FIRST_CHAR];
+			unused |= 1 << (c - FIRST_CHAR);
+		}
+
+		int found = mIndex.findFormable(mLetterCounts, mMatches);
+
+		int words = 0;
+		for (int i = 0; i < found; ++i) {
+			int word = mMatches[i];
+			if (mIndex.getWordLength(word) >= 2) {
+				++words;
+				unused &= ~mIndex.getLetterMask(word);
+			}
+		}
+
+		mWordCount = words;
+		mUnusedLetters = unused;
+	}
+
+	private static char[] deal(Random r) {
+
+		char[] grid = new char[GameModel.GRID_ITEMS];
+
+		boolean hasU = false;
+		boolean[] isVowel = new boolean[GameModel.GRID_ITEMS];
+		int vowels = 0;
+		while (vowels < NUMBER_OF_VOWELS_ON_BOARD) {
+			int index = r.nextInt(GameModel.GRID_ITEMS);
+			if (!isVowel[index]) {
+				isVowel[index] = true;
+				++vowels;
+				// pick a random vowel
+				char c = VOWELS.charAt(r.nextInt(VOWELS.length()));
+				grid[index] = c;
+				hasU = hasU || (c == 'U');
+			}
+		}
+
+		for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+			if (!isVowel[i]) {
+				// pick a random consonant, but skip Q unless we have a U
+				int consonantChoices = CONSONANTS.length() - (hasU ? 0 : 1);
+				grid[i] = CONSONANTS.charAt(r.nextInt(consonantChoices));
+			}
+		}
+
+		return grid;
+	}
+
+}
@@ -0,0 +1,372 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An immutable, minimised directed acyclic word graph (DAWG) used to answer
+ * dictionary lookups without touching the database.
+ *
+ * The graph is stored as a flat array of edges. The edges leaving a node are
+ * stored contiguously, sorted by letter, and the last edge of each node is
+ * flagged. Each edge is packed into a single int:
+ *
+ * <pre>
+ * bits 0-4   letter (0 = 'A' ... 25 = 'Z')
+ * bit  5     a word ends after this edge
+ * bit  6     last edge leaving this node
+ * bits 7-31  index of the first edge of the child node (0 = no children)
+ * </pre>
+ *
+ * Edge 0 is never used so that an index of 0 can mean "no children".
+ * Instances are created with a DawgBuilder and are safe to share between
+ * threads.
+ *
+ * A graph can be written out in a compact binary format and read back
+ * straight from a ByteBuffer, which may be a MappedByteBuffer. In that case
+ * lookups are answered directly from the mapped pages and nothing has to be
+ * parsed or copied onto the heap. The format is a header of six big-endian
+ * ints (magic number, format version, word count, edge count, root offset and
+ * a CRC32 of the edges) followed by the edges.
+ */
+public final class Dawg {
+
+	static final int LETTER_MASK = 0x1F;
+	static final int END_OF_WORD_FLAG = 1 << 5;
+	static final int LAST_EDGE_FLAG = 1 << 6;
+	static final int CHILD_SHIFT = 7;
+
+	static final int NO_NODE = -1;
+
+	public static final int HEADER_SIZE = 6 * 4; // bytes
+
+	private static final int MAGIC = 0x44415747; // "DAWG"
+	private static final int FORMAT_VERSION = 1;
+
+	private static final char FIRST_CHAR = 'A';
+	private static final int ALPHABET_SIZE = 26;
+
+	private static final int INITIAL_DEPTH = 32;
+	private static final int INITIAL_RESULT_CAPACITY = 1024;
+
+	private final IntBuffer mEdges;
+	private final int mEdgeCount;
+	private final int mRoot;
+	private final int mWordCount;
+	private final int mChecksum;
+
+	Dawg(int[] edges, int edgeCount, int root, int wordCount) {
+		this(IntBuffer.wrap(edges, 0, edgeCount).slice(), root, wordCount,
+				checksum(IntBuffer.wrap(edges, 0, edgeCount).slice()));
+	}
+
+	private Dawg(IntBuffer edges, int root, int wordCount, int checksum) {
+		mEdges = edges;
+		mEdgeCount = edges.limit();
+		mRoot = root;
+		mWordCount = wordCount;
+		mChecksum = checksum;
+	}
+
+	/**
+	 * Read a graph written by write(..). The edges are not copied, so buffer
+	 * must not be modified while the graph is in use. They are checked
+	 * against the checksum in the header, and every child index against the
+	 * number of edges, so that a damaged file is rejected here rather than
+	 * failing in a later lookup.
+	 *
+	 * @throws IOException
+	 *             if the buffer does not contain a graph in the current
+	 *             format, or the graph is damaged.
+	 */
+	public static Dawg read(ByteBuffer buffer) throws IOException {
+
+		if (buffer.remaining() < HEADER_SIZE)
+			throw new IOException("Dictionary is truncated");
+
+		ByteBuffer header = buffer.duplicate();
+		if (header.getInt() != MAGIC)
+			throw new IOException("Not a dictionary file");
+		if (header.getInt() != FORMAT_VERSION)
+			throw new IOException("Unsupported dictionary version");
+
+		int wordCount = header.getInt();
+		int edgeCount = header.getInt();
+		int root = header.getInt();
+		int checksum = header.getInt();
+
+		if (edgeCount < 1 || header.remaining() < edgeCount * 4)
+			throw new IOException("Dictionary is truncated");
+		if (root < 0 || root >= edgeCount)
+			throw new IOException("Dictionary is corrupt");
+
+		IntBuffer edges = header.slice().asIntBuffer();
+		edges.limit(edgeCount);
+		edges = edges.slice();
+
+		if (checksum(edges) != checksum)
+			throw new IOException("Dictionary checksum does not match");
+
+		// Every node's edges must end with a flagged edge, and children must
+		// be in range, or lookups could run off the end of the edges
+		if (edgeCount > 1
+				&& (edges.get(edgeCount - 1) & LAST_EDGE_FLAG) == 0)
+			throw new IOException("Dictionary is corrupt");
+		for (int i = 0; i < edgeCount; ++i) {
+			if ((edges.get(i) >>> CHILD_SHIFT) >= edgeCount)
+				throw new IOException("Dictionary is corrupt");
+		}
+
+		return new Dawg(edges, root, wordCount, checksum);
+	}
+
+	/**
+	 * Write the graph in the format understood by read(..).
+	 */
+	public void write(OutputStream stream) throws IOException {
+
+		DataOutputStream out = new DataOutputStream(stream);
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(mWordCount);
+		out.writeInt(mEdgeCount);
+		out.writeInt(mRoot);
+		out.writeInt(mChecksum);
+
+		for (int i = 0; i < mEdgeCount; ++i) {
+			out.writeInt(mEdges.get(i));
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * @return true if word is in the dictionary. Words must be upper case.
+	 */
+	public boolean contains(CharSequence word) {
+
+		if (word == null || word.length() == 0)
+			return false;
+
+		int node = mRoot;
+		int edge = 0;
+
+		for (int i = 0; i < word.length(); ++i) {
+			edge = findEdge(node, word.charAt(i));
+			if (edge == NO_NODE)
+				return false;
+			node = mEdges.get(edge) >>> CHILD_SHIFT;
+		}
+
+		return (mEdges.get(edge) & END_OF_WORD_FLAG) != 0;
+	}
+
+	/**
+	 * @return true if at least one word in the dictionary starts with prefix.
+	 *         The empty string is a prefix of every word.
+	 */
+	public boolean containsPrefix(CharSequence prefix) {
+
+		if (prefix == null)
+			return false;
+
+		int node = mRoot;
+
+		for (int i = 0; i < prefix.length(); ++i) {
+			int edge = findEdge(node, prefix.charAt(i));
+			if (edge == NO_NODE)
+				return false;
+			node = mEdges.get(edge) >>> CHILD_SHIFT;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Find every word that can be spelt using each letter no more times than
+	 * it appears in letterCounts. The graph is walked with an explicit stack
+	 * and a branch is abandoned as soon as it needs a letter that has run out,
+	 * so only a small part of the dictionary is visited.
+	 *
+	 * @param letterCounts
+	 *            the number of each letter available, indexed from 'A'. Not
+	 *            modified.
+	 * @return the words in alphabetical order.
+	 */
+	public List<String> findFormableWords(int[] letterCounts) {
+
+		int[] available = new int[ALPHABET_SIZE];
+		int letterTotal = 0;
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			available[i] = letterCounts[i];
+			letterTotal += letterCounts[i];
+		}
+
+		return collectWords(available, letterTotal);
+	}
+
+	/**
+	 * @return every word in the dictionary, in alphabetical order.
+	 */
+	public List<String> getWords() {
+
+		int[] available = new int[ALPHABET_SIZE];
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			available[i] = Integer.MAX_VALUE;
+		}
+
+		return collectWords(available, Integer.MAX_VALUE);
+	}
+
+	/*
+	 * Depth first walk of the graph collecting the words no longer than
+	 * maxLength that can be spelt from the available letters. available is
+	 * used as scratch space but is restored before returning.
+	 */
+	private List<String> collectWords(int[] available, int maxLength) {
+
+		List<String> words = new ArrayList<String>(
+				Math.min(mWordCount, INITIAL_RESULT_CAPACITY));
+
+		char[] word = new char[Math.min(maxLength, INITIAL_DEPTH)];
+		int[] path = new int[word.length];
+		int depth = 0;
+		int edge = mRoot;
+
+		while (true) {
+
+			if (edge != 0) {
+
+				int value = mEdges.get(edge);
+				int letter = value & LETTER_MASK;
+
+				if (available[letter] > 0) {
+
+					word[depth] = (char) (FIRST_CHAR + letter);
+					if ((value & END_OF_WORD_FLAG) != 0)
+						words.add(new String(word, 0, depth + 1));
+
+					int child = value >>> CHILD_SHIFT;
+					if (child != 0 && depth + 1 < maxLength) {
+						if (depth + 1 == word.length) {
+							char[] longerWord = new char[word.length * 2];
+							System.arraycopy(word, 0, longerWord, 0, word.length);
+							word = longerWord;
+							int[] longerPath = new int[path.length * 2];
+							System.arraycopy(path, 0, longerPath, 0, path.length);
+							path = longerPath;
+						}
+
+						// Descend
+						--available[letter];
+						path[depth++] = edge;
+						edge = child;
+						continue;
+					}
+				}
+
+				edge = ((value & LAST_EDGE_FLAG) != 0) ? 0 : edge + 1;
+
+			} else {
+
+				if (depth == 0)
+					break;
+
+				// Climb back up and move on to the next sibling
+				edge = path[--depth];
+				int value = mEdges.get(edge);
+				++available[value & LETTER_MASK];
+				edge = ((value & LAST_EDGE_FLAG) != 0) ? 0 : edge + 1;
+
+			}
+		}
+
+		return words;
+	}
+
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+	/*
+	 * The index of the root's first edge, for converting the graph into
+	 * other structures.
+	 */
+	int getRoot() {
+		return mRoot;
+	}
+
+	int getEdge(int index) {
+		return mEdges.get(index);
+	}
+
+	public int getEdgeCount() {
+		return mEdgeCount;
+	}
+
+	/**
+	 * @return a CRC32 of the edges, which changes whenever the word list does.
+	 */
+	public int getChecksum() {
+		return mChecksum;
+	}
+
+	/**
+	 * @return the number of bytes used by the edges. For a graph read from a
+	 *         mapped buffer these live in the page cache, not on the heap.
+	 */
+	public int getSizeInBytes() {
+		return mEdgeCount * 4;
+	}
+
+	/**
+	 * @return true if the edges are held outside the Java heap, for example
+	 *         in a memory mapped file.
+	 */
+	public boolean isDirect() {
+		return mEdges.isDirect();
+	}
+
+	/*
+	 * Find the edge leaving node labelled with c. Returns NO_NODE if there is
+	 * no such edge.
+	 */
+	private int findEdge(int node, char c) {
+
+		int letter = c - FIRST_CHAR;
+		if (node == 0 || letter < 0 || letter >= ALPHABET_SIZE)
+			return NO_NODE;
+
+		for (int edge = node;; ++edge) {
+			int value = mEdges.get(edge);
+			int edgeLetter = value & LETTER_MASK;
+
+			if (edgeLetter == letter)
+				return edge;
+			if (edgeLetter > letter || (value & LAST_EDGE_FLAG) != 0)
+				return NO_NODE;
+		}
+	}
+
+	private static int checksum(IntBuffer edges) {
+
+		CRC32 crc = new CRC32();
+		for (int i = 0; i < edges.limit(); ++i) {
+			int edge = edges.get(i);
+			crc.update(edge >>> 24);
+			crc.update(edge >>> 16);
+			crc.update(edge >>> 8);
+			crc.update(edge);
+		}
+
+		return (int) crc.getValue();
+	}
+
+}
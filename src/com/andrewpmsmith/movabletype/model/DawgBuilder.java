@@ -0,0 +1,257 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Builds a minimised Dawg from a sorted list of words, using the incremental
+ * construction algorithm of Daciuk et al. Equivalent suffixes are merged as
+ * soon as they can no longer change, so the full uncompressed trie is never
+ * held in memory.
+ *
+ * Words must be added in ascending order. Duplicates are ignored, as are
+ * words containing anything other than the letters A to Z.
+ */
+public class DawgBuilder {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/*
+	 * A node of the graph under construction. Once a node has been
+	 * registered its edges never change and mOffset is the index of its first
+	 * edge in the output array.
+	 */
+	private static class Node {
+
+		private byte[] mLetters = new byte[0];
+		private Node[] mChildren = new Node[0];
+		private boolean mEndOfWord;
+		private int mOffset;
+
+		private Node lastChild() {
+			return mChildren[mChildren.length - 1];
+		}
+
+		private void setLastChild(Node child) {
+			mChildren[mChildren.length - 1] = child;
+		}
+
+		private Node addChild(byte letter) {
+
+			int count = mLetters.length;
+
+			byte[] letters = new byte[count + 1];
+			System.arraycopy(mLetters, 0, letters, 0, count);
+			letters[count] = letter;
+
+			Node[] children = new Node[count + 1];
+			System.arraycopy(mChildren, 0, children, 0, count);
+			children[count] = new Node();
+
+			mLetters = letters;
+			mChildren = children;
+
+			return children[count];
+		}
+
+	} // class Node
+
+	/*
+	 * Identifies a registered node by its edges so that equivalent nodes can
+	 * be found in the register.
+	 */
+	private static class Signature {
+
+		private final int[] mKey;
+		private final int mHash;
+
+		private Signature(Node node) {
+
+			int count = node.mLetters.length;
+			mKey = new int[count * 2 + 1];
+
+			mKey[0] = node.mEndOfWord ? 1 : 0;
+			for (int i = 0; i < count; ++i) {
+				Node child = node.mChildren[i];
+				mKey[i * 2 + 1] = node.mLetters[i]
+						| (child.mEndOfWord ? Dawg.END_OF_WORD_FLAG : 0);
+				mKey[i * 2 + 2] = child.mOffset;
+			}
+
+			mHash = Arrays.hashCode(mKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Signature)
+					&& Arrays.equals(mKey, ((Signature) o).mKey);
+		}
+
+	} // class Signature
+
+	private final Node mRoot = new Node();
+	private final HashMap<Signature, Node> mRegister = new HashMap<Signature, Node>();
+	private final List<Node> mUnchecked = new ArrayList<Node>();
+
+	private int[] mEdges = new int[INITIAL_CAPACITY];
+	// Edge 0 is reserved so that a child offset of 0 means "no children"
+	private int mEdgeCount = 1;
+
+	private String mPreviousWord = "";
+	private int mWordCount = 0;
+	private boolean mFinished = false;
+
+	/**
+	 * Add the next word in sorted order.
+	 *
+	 * @return true if the word was added, false if it was a duplicate or
+	 *         contained characters other than A to Z.
+	 * @throws IllegalArgumentException
+	 *             if the word is out of order.
+	 */
+	public boolean add(String word) {
+
+		if (mFinished)
+			throw new IllegalStateException("build() has already been called");
+
+		if (!isValidWord(word))
+			return false;
+
+		int order = word.compareTo(mPreviousWord);
+		if (order == 0)
+			return false;
+		if (order < 0)
+			throw new IllegalArgumentException("Words must be added in order: "
+					+ word + " after " + mPreviousWord);
+
+		int common = commonPrefixLength(word, mPreviousWord);
+
+		// Everything below the common prefix is now complete
+		minimise(common);
+
+		Node node = (common == 0) ? mRoot : mUnchecked.get(common - 1);
+		for (int i = common; i < word.length(); ++i) {
+			node = node.addChild((byte) (word.charAt(i) - 'A'));
+			mUnchecked.add(node);
+		}
+		node.mEndOfWord = true;
+
+		mPreviousWord = word;
+		++mWordCount;
+
+		return true;
+	}
+
+	/**
+	 * Finish construction and return the minimised graph. The builder cannot
+	 * be used after this has been called.
+	 */
+	public Dawg build() {
+
+		if (!mFinished) {
+			minimise(0);
+			mRoot.mOffset = writeEdges(mRoot);
+			mFinished = true;
+			mRegister.clear();
+
+			int[] edges = new int[mEdgeCount];
+			System.arraycopy(mEdges, 0, edges, 0, mEdgeCount);
+			mEdges = edges;
+		}
+
+		return new Dawg(mEdges, mEdgeCount, mRoot.mOffset, mWordCount);
+	}
+
+	static boolean isValidWord(String word) {
+
+		if (word == null || word.length() == 0)
+			return false;
+
+		for (int i = 0; i < word.length(); ++i) {
+			char c = word.charAt(i);
+			if (c < 'A' || c > 'Z')
+				return false;
+		}
+
+		return true;
+	}
+
+	private static int commonPrefixLength(String a, String b) {
+		int length = Math.min(a.length(), b.length());
+		int i = 0;
+		while (i < length && a.charAt(i) == b.charAt(i))
+			++i;
+		return i;
+	}
+
+	/*
+	 * Replace or register each unchecked node deeper than depth, starting with
+	 * the deepest.
+	 */
+	private void minimise(int depth) {
+
+		for (int i = mUnchecked.size() - 1; i >= depth; --i) {
+
+			Node parent = (i == 0) ? mRoot : mUnchecked.get(i - 1);
+			Node child = parent.lastChild();
+
+			Signature signature = new Signature(child);
+			Node existing = mRegister.get(signature);
+
+			if (existing != null) {
+				parent.setLastChild(existing);
+			} else {
+				child.mOffset = writeEdges(child);
+				mRegister.put(signature, child);
+			}
+
+			mUnchecked.remove(i);
+		}
+	}
+
+	/*
+	 * Append the edges of a node to the output, returning the offset of the
+	 * first edge or 0 if the node has no edges.
+	 */
+	private int writeEdges(Node node) {
+
+		int count = node.mLetters.length;
+		if (count == 0)
+			return 0;
+
+		ensureCapacity(mEdgeCount + count);
+
+		int offset = mEdgeCount;
+		for (int i = 0; i < count; ++i) {
+			Node child = node.mChildren[i];
+			int edge = node.mLetters[i] | (child.mOffset << Dawg.CHILD_SHIFT);
+			if (child.mEndOfWord)
+				edge |= Dawg.END_OF_WORD_FLAG;
+			if (i == count - 1)
+				edge |= Dawg.LAST_EDGE_FLAG;
+			mEdges[mEdgeCount++] = edge;
+		}
+
+		// The node's edges are fixed now so release the build structures
+		node.mLetters = null;
+		node.mChildren = null;
+
+		return offset;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > mEdges.length) {
+			int[] edges = new int[Math.max(capacity, mEdges.length * 2)];
+			System.arraycopy(mEdges, 0, edges, 0, mEdgeCount);
+			mEdges = edges;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compiles a plain text word list, one word per line, into a Dawg.
+ *
+ * This runs as part of the build (see custom_rules.xml) to turn
+ * res/raw/wordlist.txt into assets/wordlist.dawg, and at runtime as a
+ * fallback if the compiled asset cannot be opened. It must only depend on
+ * the standard Java library so that it can be run outside of Android.
+ */
+public final class DawgCompiler {
+
+	/**
+	 * Usage: DawgCompiler &lt;word list&gt; &lt;output file&gt;
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 2) {
+			System.err.println("Usage: DawgCompiler <word list> <output file>");
+			System.exit(1);
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(args[0]), "UTF-8"));
+		Dawg dawg;
+		try {
+			dawg = compile(reader);
+		} finally {
+			reader.close();
+		}
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(
+				args[1]));
+		try {
+			dawg.write(out);
+		} finally {
+			out.close();
+		}
+
+		System.out.println("Compiled " + dawg.getWordCount() + " words into "
+				+ dawg.getEdgeCount() + " edges ("
+				+ (Dawg.HEADER_SIZE + dawg.getSizeInBytes()) + " bytes)");
+	}
+
+	/**
+	 * Read every line of a word list and build a Dawg from the words that
+	 * survive normaliseWord(..). The list does not need to be sorted.
+	 */
+	public static Dawg compile(BufferedReader reader) throws IOException {
+
+		List<String> words = new ArrayList<String>();
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+
+			String word = normaliseWord(line);
+			if (word != null)
+				words.add(word);
+
+		}
+
+		// The word list is not quite in order, and the builder needs sorted
+		// input
+		Collections.sort(words);
+
+		DawgBuilder builder = new DawgBuilder();
+		for (String word : words) {
+			builder.add(word);
+		}
+
+		return builder.build();
+	}
+
+	/*
+	 * Prepare a word for storage in the dictionary. Reject words less than two
+	 * letters in length. Reject words with non-alphabetical characters (e.g.
+	 * apostrophes/hyphens). Convert words to upper case.
+	 */
+	static String normaliseWord(String word) {
+
+		if (word == null)
+			return null;
+		word = word.trim();
+		if (word.length() < 2)
+			return null;
+		word = word.toUpperCase(Locale.US);
+		if (!DawgBuilder.isValidWord(word))
+			return null;
+		return word;
+
+	}
+
+	// Suppress default constructor for noninstantiability
+	private DawgCompiler() {
+		throw new AssertionError();
+	}
+
+}
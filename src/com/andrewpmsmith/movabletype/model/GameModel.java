@@ -1,9 +1,15 @@
 package com.andrewpmsmith.movabletype.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import android.content.Context;
 
@@ -14,6 +20,15 @@ import android.content.Context;
  * A GameModel provides the data that is rendered on a Board object, and accepts
  * user input via a Board object.
  * 
+ * Tile ownership is held as bitboards: one 25 bit mask of the tiles each
+ * player owns, and a mask of the tiles that are surrounded by their owner.
+ * Bit i is the tile at index i, counting across each row from the top left.
+ * Scores are the number of bits set in each player's mask.
+ * 
+ * The model keeps a Zobrist hash of its position up to date as turns are
+ * played, changing it only by the keys of the tiles that changed hands, so
+ * that positions can be compared without serializing the whole model.
+ * 
  * @author Andrew Smith
  */
 public class GameModel implements Serializable {
@@ -25,9 +40,21 @@ public class GameModel implements Serializable {
 	public static final int PLAYER2 = 1;
 	private static final long serialVersionUID = 1L;
 
-	private static final int NUMBER_OF_VOWELS_ON_BOARD = 4;
-	private static final String CONSONANTS = "BCDFHJKLMNPRSTVWXYZQ";
-	private static final String VOWELS = "AEIOU";
+	private static final int ALL_TILES = (1 << GRID_ITEMS) - 1;
+	private static final int LEFT_COLUMN = 0x108421; // tiles 0, 5, 10, 15, 20
+	private static final int RIGHT_COLUMN = LEFT_COLUMN << (GRID_COLUMNS - 1);
+
+	// The tiles above, below, left and right of each tile
+	private static final int[] NEIGHBOURS = new int[GRID_ITEMS];
+	static {
+		for (int tile = 0; tile < GRID_ITEMS; ++tile) {
+			int bit = 1 << tile;
+			NEIGHBOURS[tile] = ((bit & LEFT_COLUMN) == 0 ? bit >>> 1 : 0)
+					| ((bit & RIGHT_COLUMN) == 0 ? bit << 1 : 0)
+					| (bit >>> GRID_COLUMNS)
+					| ((bit << GRID_COLUMNS) & ALL_TILES);
+		}
+	}
 
 	public enum GameState {
 		PLAYER1_TURN, PLAYER2_TURN, GAME_OVER
@@ -45,25 +72,45 @@ public class GameModel implements Serializable {
 		PLAYER1_WIN, PLAYER2_WIN, DRAW
 	}
 
+	/**
+	 * Receives the outcome of playTurn(TurnCallback, Executor).
+	 */
+	public interface TurnCallback {
+		public void onTurnPlayed(TurnResult result);
+	}
+
+	// Dictionary checks for asynchronous turns run here, one at a time, off
+	// the caller's thread
+	private static final ExecutorService sDictionaryExecutor = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "GameModel dictionary");
+					thread.setDaemon(true);
+					return thread;
+				}
+
+			});
+
+	// The tile type used before ownership was held in bitboards. It is kept
+	// so that games saved in that format can still be read.
 	private class Letter implements Serializable {
 
 		private static final long serialVersionUID = 1L;
 		public char mLetter;
 		public LetterState mLetterState;
 
-		public Letter(char letter) {
-			mLetter = letter;
-			mLetterState = LetterState.UNPLAYED;
-		}
-
-		public Letter(char letter, LetterState state) {
-			mLetter = letter;
-			mLetterState = state;
-		}
-
 	}
 
-	private final Letter[] mGrid;
+	private char[] mLetters;
+	private int mPlayer1Tiles;
+	private int mPlayer2Tiles;
+	// Tiles surrounded by the player that owns them
+	private int mSurroundedTiles;
+
+	// Only set while reading a game saved in the original format
+	private Letter[] mGrid;
 	private List<Integer> mWord;
 
 	private GameState mGameState;
@@ -71,27 +118,53 @@ public class GameModel implements Serializable {
 	private boolean mHasPassed;
 	private WordTrie mPlayedWords = new WordTrie();
 
-	private int mPlayer1Points;
-	private int mPlayer2Points;
+	// Player 2 is played by the computer
+	private boolean mComputerOpponent;
+
+	// The Zobrist hash of the position. It isn't saved, so it is worked out
+	// again when a game is read.
+	private transient long mHash;
+
+	// Every dictionary word that can be spelt from the grid. Tiles can't be
+	// reused within a word, so no other word can ever be played in this game.
+	private WordTrie mBoardWords;
 
 	transient protected Context mContext;
 
 	public GameModel(Context context) {
+		this(context, false);
+	}
+
+	/**
+	 * @param computerOpponent
+	 *            true if player 2 is to be played by the computer.
+	 */
+	public GameModel(Context context, boolean computerOpponent) {
+
+		mLetters = WordList.getBoardGenerator(context).generate(new Random());
 
-		mGrid = generateRandomLetterGrid();
+		mComputerOpponent = computerOpponent;
 
 		mGameState = GameState.PLAYER1_TURN;
-		mPlayer1Points = 0;
-		mPlayer2Points = 0;
 
 		mContext = context;
 
+		mBoardWords = findBoardWords();
+
+		mHash = Zobrist.hash(this);
+
 	}
 
 	public static GameModel deserialize(byte[] stream, Context context) {
 		GameModel gm = (GameModel) Serializer.deserialize(stream);
-		if (gm != null)
+		if (gm != null) {
 			gm.setContext(context);
+
+			// Games saved before the board words were stored need them
+			// rebuilt
+			if (gm.mBoardWords == null)
+				gm.mBoardWords = gm.findBoardWords();
+		}
 		return gm;
 	}
 
@@ -103,21 +176,40 @@ public class GameModel implements Serializable {
 		return Serializer.serialize(this);
 	}
 
+	/**
+	 * Create a game part way through. Scores are always the number of tiles
+	 * each player owns, and are found from states.
+	 */
 	public GameModel(char[] grid, LetterState[] states, GameState gameState,
-			int p1Points, int p2Points, Context context) {
+			Context context) {
 
-		mGrid = new Letter[GRID_ITEMS];
+		mLetters = new char[GRID_ITEMS];
+		System.arraycopy(grid, 0, mLetters, 0, GRID_ITEMS);
 
 		for (int i = 0; i < GRID_ITEMS; ++i) {
-			mGrid[i] = new Letter(grid[i], states[i]);
+			setLetterState(i, states[i]);
 		}
 
 		mGameState = gameState;
-		mPlayer1Points = p1Points;
-		mPlayer2Points = p2Points;
 
 		mContext = context;
 
+		mBoardWords = findBoardWords();
+
+		mHash = Zobrist.hash(this);
+
+	}
+
+	/**
+	 * @deprecated Scores are now found from states, and p1Points and
+	 *             p2Points are ignored. Use
+	 *             {@link #GameModel(char[], LetterState[], GameState, Context)}
+	 *             instead.
+	 */
+	@Deprecated
+	public GameModel(char[] grid, LetterState[] states, GameState gameState,
+			int p1Points, int p2Points, Context context) {
+		this(grid, states, gameState, context);
 	}
 
 	/* DataSource Methods */
@@ -139,41 +231,58 @@ public class GameModel implements Serializable {
 	}
 
 	public char getLetter(int index) {
-		return mGrid[index].mLetter;
+		return mLetters[index];
 	}
 
 	public LetterState getLetterState(int index) {
-		return mGrid[index].mLetterState;
+
+		int bit = 1 << index;
+		boolean surrounded = (mSurroundedTiles & bit) != 0;
+
+		if ((mPlayer1Tiles & bit) != 0)
+			return surrounded ? LetterState.PLAYER1_SURROUNDED
+					: LetterState.PLAYER1_OWNED;
+		if ((mPlayer2Tiles & bit) != 0)
+			return surrounded ? LetterState.PLAYER2_SURROUNDED
+					: LetterState.PLAYER2_OWNED;
+		return LetterState.UNPLAYED;
 	}
 
-	public int getPoints(int player) {
+	/**
+	 * @return a mask with bit i set if player owns the tile at index i,
+	 *         whether or not it is surrounded.
+	 */
+	public int getOwnedTiles(int player) {
+		return (player == PLAYER1) ? mPlayer1Tiles : mPlayer2Tiles;
+	}
 
-		int p1Points = mPlayer1Points;
-		int p2Points = mPlayer2Points;
+	/**
+	 * @return a mask with bit i set if the tile at index i is surrounded by
+	 *         the player that owns it.
+	 */
+	public int getSurroundedTiles() {
+		return mSurroundedTiles;
+	}
 
-		if (mWord != null) {
-			for (int i : mWord) {
-				LetterState state = mGrid[i].mLetterState;
+	/**
+	 * @return the player's score, including the tiles the current word would
+	 *         claim if it were played.
+	 */
+	public int getPoints(int player) {
 
-				if (mGameState == GameState.PLAYER1_TURN) {
-					if (state == LetterState.UNPLAYED) {
-						++p1Points;
-					} else if (state == LetterState.PLAYER2_OWNED) {
-						++p1Points;
-						--p2Points;
-					}
-				} else if (mGameState == GameState.PLAYER2_TURN) {
-					if (state == LetterState.UNPLAYED) {
-						++p2Points;
-					} else if (state == LetterState.PLAYER1_OWNED) {
-						++p2Points;
-						--p1Points;
-					}
-				}
-			}
+		int p1Tiles = mPlayer1Tiles;
+		int p2Tiles = mPlayer2Tiles;
+
+		int claimed = claimableTiles(tileMask(mWord));
+		if (mGameState == GameState.PLAYER1_TURN) {
+			p1Tiles |= claimed;
+			p2Tiles &= ~claimed;
+		} else if (mGameState == GameState.PLAYER2_TURN) {
+			p2Tiles |= claimed;
+			p1Tiles &= ~claimed;
 		}
 
-		return (player == PLAYER1) ? p1Points : p2Points;
+		return Integer.bitCount((player == PLAYER1) ? p1Tiles : p2Tiles);
 
 	}
 
@@ -181,10 +290,50 @@ public class GameModel implements Serializable {
 		return mGameResult;
 	}
 
+	/**
+	 * @return true if the last turn was a pass, so that another pass would
+	 *         end the game.
+	 */
+	public boolean hasPassed() {
+		return mHasPassed;
+	}
+
+	/**
+	 * @return a 64 bit fingerprint of the position: the grid, who owns each
+	 *         tile, whose turn it is, whether the last turn was a pass, and
+	 *         the words played. Equal positions always have equal hashes,
+	 *         and different ones almost never do. See Zobrist.
+	 */
+	public long getHash() {
+		return mHash;
+	}
+
+	/**
+	 * @return true if player 2 is played by the computer.
+	 */
+	public boolean hasComputerOpponent() {
+		return mComputerOpponent;
+	}
+
 	public String getWord() {
 		return decodeWordFromTileIndexes(mWord);
 	}
 
+	/**
+	 * @return the words played so far in this game. Must not be modified.
+	 */
+	public WordTrie getPlayedWords() {
+		return mPlayedWords;
+	}
+
+	/**
+	 * @return every dictionary word that can be spelt from the grid, whether
+	 *         or not it has been played. The trie is frozen.
+	 */
+	public WordTrie getBoardWords() {
+		return mBoardWords;
+	}
+
 	/* Delegate Methods */
 
 	public TurnResult playTurn() {
@@ -196,53 +345,126 @@ public class GameModel implements Serializable {
 
 		TurnResult ret = applyRules(word);
 
-		if (ret == TurnResult.SUCCESS) {
-			mHasPassed = false;
+		if (ret == TurnResult.SUCCESS)
+			commitTurn(tileMask(mWord), word);
 
-			mPlayedWords.add(word);
+		return ret;
 
-			mPlayer1Points = getPoints(PLAYER1);
-			mPlayer2Points = getPoints(PLAYER2);
+	}
 
-			// Assign new states to played word
-			for (int i : mWord) {
+	/**
+	 * Play the current word without blocking the calling thread. The word is
+	 * captured when this is called. The dictionary check runs on a background
+	 * thread, then the turn is committed and callback is told the result on
+	 * resultExecutor, so the model is only ever changed by that executor.
+	 * 
+	 * Only one turn should be in flight at a time.
+	 * 
+	 * @param resultExecutor
+	 *            where the turn is committed, normally the UI thread.
+	 */
+	public void playTurn(final TurnCallback callback,
+			final Executor resultExecutor) {
+
+		final List<Integer> tiles = (mWord == null) ? null
+				: new ArrayList<Integer>(mWord);
+		final String word = decodeWordFromTileIndexes(tiles);
+
+		// The rules that only depend on the game so far are cheap, so check
+		// them here while the model can't change under us
+		TurnResult early = (tiles == null) ? TurnResult.WORD_LESS_THAN_TWO_LETTERS
+				: applyGameRules(word);
 
-				if (mGrid[i].mLetterState != LetterState.PLAYER1_SURROUNDED
-						&& mGrid[i].mLetterState != LetterState.PLAYER2_SURROUNDED) {
+		if (early != TurnResult.SUCCESS) {
+			final TurnResult result = early;
+			resultExecutor.execute(new Runnable() {
 
-					mGrid[i].mLetterState = (mGameState == GameState.PLAYER1_TURN) ? LetterState.PLAYER1_OWNED
-							: LetterState.PLAYER2_OWNED;
+				@Override
+				public void run() {
+					callback.onTurnPlayed(result);
 				}
 
-			}
+			});
+			return;
+		}
 
-			mWord = null;
+		sDictionaryExecutor.execute(new Runnable() {
 
-			makeCaptures();
+			@Override
+			public void run() {
 
-			// check if game is over
-			boolean gameIsOver = true;
-			for (int i = 0; i < GRID_ITEMS; ++i) {
-				gameIsOver &= mGrid[i].mLetterState != LetterState.UNPLAYED;
-				if (!gameIsOver)
-					break;
-			}
+				final boolean inDictionary = isInDictionary(word);
+
+				resultExecutor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+
+						TurnResult result = inDictionary ? TurnResult.SUCCESS
+								: TurnResult.WORD_NOT_IN_DICTIONARY;
+
+						if (result == TurnResult.SUCCESS)
+							commitTurn(tileMask(tiles), word);
+
+						callback.onTurnPlayed(result);
+					}
 
-			if (gameIsOver) {
-				endGame();
-			} else if (mGameState == GameState.PLAYER1_TURN) {
-				mGameState = GameState.PLAYER2_TURN;
-			} else if (mGameState == GameState.PLAYER2_TURN) {
-				mGameState = GameState.PLAYER1_TURN;
+				});
 			}
 
+		});
+
+	}
+
+	/*
+	 * Score a word that has passed the rules, claim its tiles and move on to
+	 * the next turn.
+	 */
+	private void commitTurn(int tiles, CharSequence word) {
+
+		int p1 = mPlayer1Tiles;
+		int p2 = mPlayer2Tiles;
+		int surrounded = mSurroundedTiles;
+		long stateBefore = Zobrist.state(mGameState, mHasPassed);
+
+		mHasPassed = false;
+
+		mPlayedWords.add(word);
+
+		// The played word's tiles go to the current player, apart from
+		// surrounded tiles, which are protected
+		int claimed = claimableTiles(tiles);
+		if (mGameState == GameState.PLAYER1_TURN) {
+			mPlayer1Tiles |= claimed;
+			mPlayer2Tiles &= ~claimed;
+		} else {
+			mPlayer2Tiles |= claimed;
+			mPlayer1Tiles &= ~claimed;
 		}
 
-		return ret;
+		mWord = null;
+
+		makeCaptures();
+
+		boolean gameIsOver = (mPlayer1Tiles | mPlayer2Tiles) == ALL_TILES;
+
+		if (gameIsOver) {
+			endGame();
+		} else if (mGameState == GameState.PLAYER1_TURN) {
+			mGameState = GameState.PLAYER2_TURN;
+		} else if (mGameState == GameState.PLAYER2_TURN) {
+			mGameState = GameState.PLAYER1_TURN;
+		}
+
+		mHash ^= Zobrist.word(word)
+				^ Zobrist.tiles(p1 ^ mPlayer1Tiles, p2 ^ mPlayer2Tiles,
+						surrounded ^ mSurroundedTiles)
+				^ stateBefore ^ Zobrist.state(mGameState, mHasPassed);
 
 	}
 
 	public void passTurn() {
+		long stateBefore = Zobrist.state(mGameState, mHasPassed);
 		if (mHasPassed) {
 			endGame();
 		} else if (mGameState == GameState.PLAYER1_TURN) {
@@ -251,14 +473,89 @@ public class GameModel implements Serializable {
 			mGameState = GameState.PLAYER1_TURN;
 		}
 		mHasPassed = true;
+		mHash ^= stateBefore ^ Zobrist.state(mGameState, mHasPassed);
+	}
+
+	/**
+	 * Play a move, recording in it what changed so that it can be undone.
+	 * Unlike playTurn(), this neither reads nor clears the current word, and
+	 * a move with no tiles passes.
+	 * 
+	 * @return SUCCESS if the move was played. Otherwise the game is left as
+	 *         it was and the move isn't applied.
+	 * @throws IllegalStateException
+	 *             if the move is already applied.
+	 */
+	public TurnResult apply(Move move) {
+
+		if (move.mApplied)
+			throw new IllegalStateException("Move is already applied");
+
+		CharSequence word = null;
+		if (!move.isPass()) {
+			word = move.spell(mLetters);
+			TurnResult ret = applyRules(word);
+			if (ret != TurnResult.SUCCESS)
+				return ret;
+		}
+
+		move.mPlayer1Tiles = mPlayer1Tiles;
+		move.mPlayer2Tiles = mPlayer2Tiles;
+		move.mSurroundedTiles = mSurroundedTiles;
+		move.mGameState = mGameState;
+		move.mGameResult = mGameResult;
+		move.mHasPassed = mHasPassed;
+		move.mHash = mHash;
+		move.mSelectedWord = mWord;
+		move.mApplied = true;
+
+		if (word == null) {
+			passTurn();
+		} else {
+			commitTurn(move.getTileMask(), word);
+			mWord = move.mSelectedWord;
+		}
+
+		return TurnResult.SUCCESS;
+	}
+
+	/**
+	 * Take back a move played by apply(..). Moves must be undone in the
+	 * reverse of the order they were applied.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the move isn't applied.
+	 */
+	public void undo(Move move) {
+
+		if (!move.mApplied)
+			throw new IllegalStateException("Move is not applied");
+
+		if (!move.isPass())
+			mPlayedWords.remove(move.mWord);
+
+		mPlayer1Tiles = move.mPlayer1Tiles;
+		mPlayer2Tiles = move.mPlayer2Tiles;
+		mSurroundedTiles = move.mSurroundedTiles;
+		mGameState = move.mGameState;
+		mGameResult = move.mGameResult;
+		mHasPassed = move.mHasPassed;
+		mHash = move.mHash;
+		mWord = move.mSelectedWord;
+
+		move.mSelectedWord = null;
+		move.mApplied = false;
 	}
 
 	private void endGame() {
 		mGameState = GameState.GAME_OVER;
 
-		if (mPlayer1Points > mPlayer2Points) {
+		int p1Points = Integer.bitCount(mPlayer1Tiles);
+		int p2Points = Integer.bitCount(mPlayer2Tiles);
+
+		if (p1Points > p2Points) {
 			mGameResult = GameResult.PLAYER1_WIN;
-		} else if (mPlayer1Points < mPlayer2Points) {
+		} else if (p1Points < p2Points) {
 			mGameResult = GameResult.PLAYER2_WIN;
 		} else {
 			mGameResult = GameResult.DRAW;
@@ -278,136 +575,226 @@ public class GameModel implements Serializable {
 
 		StringBuilder sb = new StringBuilder();
 		for (int i : word) {
-			sb.append(mGrid[i].mLetter);
+			sb.append(mLetters[i]);
 		}
 		return sb.toString();
 	}
 
-	private Letter[] generateRandomLetterGrid() {
-
-		Letter[] grid = new Letter[GRID_ITEMS];
+	/*
+	 * Filter the dictionary down to the words that fit within the grid's
+	 * letters.
+	 */
+	private WordTrie findBoardWords() {
 
-		Random r = new Random();
+		int[] letterCounts = new int[26];
+		for (int i = 0; i < GRID_ITEMS; ++i) {
+			++letterCounts[mLetters[i] - 'A'];
+		}
 
-		boolean hasU = false;
-		List<Integer> v = new LinkedList<Integer>();
-		while (v.size() < NUMBER_OF_VOWELS_ON_BOARD) {
-			int index = r.nextInt(GRID_ITEMS);
-			if (!v.contains(index))
-			{
-				v.add(index);
-				// pick a random vowel
-				int pos = r.nextInt(VOWELS.length());
-				char c = VOWELS.charAt(pos);
-				grid[index] = new Letter(c);
-				hasU = hasU || (c == 'U');
-			}
+		// The index returns words in alphabetical order, ready for the
+		// builder
+		WordTrie.Builder boardWords = new WordTrie.Builder();
+		for (String word : WordList.getSignatureIndex(mContext)
+				.findFormableWords(letterCounts)) {
+			boardWords.add(word);
 		}
 
-		for (int i = 0; i < GRID_ITEMS; ++i) {
-			if ( ! v.contains(i)) {
-				// pick a random consonant, but skip Q unless we have a U
-				int consonantChoices = CONSONANTS.length() - (hasU ? 0 : 1);
-				int pos = r.nextInt(consonantChoices);
-				char c = CONSONANTS.charAt(pos);
-				grid[i] = new Letter(c);
-			}
+		return boardWords.build();
+	}
+
+	private static int tileMask(List<Integer> word) {
+
+		if (word == null)
+			return 0;
+
+		int tiles = 0;
+		for (int i : word) {
+			tiles |= 1 << i;
 		}
 
-		return grid;
+		return tiles;
+	}
 
+	/*
+	 * The tiles that aren't surrounded, which are the ones playing a word
+	 * on them would claim for the current player.
+	 */
+	private int claimableTiles(int tiles) {
+		return tiles & ~mSurroundedTiles;
+	}
+
+	private void setLetterState(int index, LetterState state) {
+
+		int bit = 1 << index;
+		mPlayer1Tiles &= ~bit;
+		mPlayer2Tiles &= ~bit;
+		mSurroundedTiles &= ~bit;
+
+		switch (state) {
+		case PLAYER1_SURROUNDED:
+			mSurroundedTiles |= bit;
+			mPlayer1Tiles |= bit;
+			break;
+		case PLAYER1_OWNED:
+			mPlayer1Tiles |= bit;
+			break;
+		case PLAYER2_SURROUNDED:
+			mSurroundedTiles |= bit;
+			mPlayer2Tiles |= bit;
+			break;
+		case PLAYER2_OWNED:
+			mPlayer2Tiles |= bit;
+			break;
+		default:
+			break;
+		}
 	}
 
 	/**
 	 * Check for letters that are surrounded by a single player, and change
-	 * their state if needed. Also adjust the scores if letters change owner.
+	 * their state if needed.
+	 * 
+	 * The rules are applied to each tile in turn, in index order, so a tile
+	 * that changes owner can affect the tiles after it. When no tile changes
+	 * owner, the tiles can't affect each other, and the whole board is
+	 * resolved at once with a few mask operations. Otherwise the tiles are
+	 * visited one at a time.
 	 */
 	private void makeCaptures() {
 
-		for (int tile = 0; tile < GRID_ITEMS; ++tile) {
+		int p1 = mPlayer1Tiles;
+		int p2 = mPlayer2Tiles;
+		int surrounded = mSurroundedTiles;
+
+		int p1Surrounded = p1 & surrounded;
+		int p2Surrounded = p2 & surrounded;
 
-			LetterState currentTileState = mGrid[tile].mLetterState;
+		int byPlayer1 = surroundedBy(p1);
+		int byPlayer2 = surroundedBy(p2);
 
-			final int left = tile - 1;
-			final int right = tile + 1;
-			final int above = tile - GRID_COLUMNS;
-			final int below = tile + GRID_COLUMNS;
+		// Any tile surrounded by player 1 becomes PLAYER1_SURROUNDED.
+		// Otherwise a PLAYER1_SURROUNDED tile falls back to PLAYER1_OWNED,
+		// and only then are player 2's rules applied.
+		int rest = ~byPlayer1;
+		int toPlayer2 = rest & ~p1Surrounded & byPlayer2;
+		int released = (rest & p1Surrounded)
+				| (rest & ~p1Surrounded & ~byPlayer2 & p2Surrounded);
 
-			Letter[] surrounding = new Letter[4];
+		int newP1 = byPlayer1 | (p1 & ~toPlayer2);
+		int newP2 = toPlayer2 | (p2 & rest & ~toPlayer2);
+		int newSurrounded = byPlayer1 | toPlayer2
+				| (surrounded & ~byPlayer1 & ~toPlayer2 & ~released);
 
-			surrounding[0] = (left >= 0 && left % GRID_COLUMNS < tile
-					% GRID_COLUMNS) ? mGrid[left] : null;
-			surrounding[1] = (tile % GRID_COLUMNS < right % GRID_COLUMNS) ? mGrid[right]
-					: null;
-			surrounding[2] = (above >= 0) ? mGrid[above] : null;
-			surrounding[3] = (below < GRID_ITEMS) ? mGrid[below] : null;
+		if (newP1 == p1 && newP2 == p2) {
+			mSurroundedTiles = newSurrounded;
+		} else {
+			makeCapturesInOrder((newP1 ^ p1) | (newP2 ^ p2)
+					| (newSurrounded ^ surrounded));
+		}
+	}
 
-			boolean player1Surrounded = true;
-			boolean player2Surrounded = true;
+	/*
+	 * Apply the capture rules to one tile at a time, in index order, seeing
+	 * the changes made to earlier tiles. Only the dirty tiles are visited:
+	 * those the rules would change on the board as it was before the pass,
+	 * plus any later tile next to one that changes owner on the way. Every
+	 * other tile would be left as it is.
+	 *
+	 * A change to a tile can unsettle an earlier neighbour, which isn't
+	 * visited again until the next turn. So the dirty tiles aren't always
+	 * next to the word just played.
+	 */
+	private void makeCapturesInOrder(int dirty) {
 
-			for (int i = 0; i < 4; ++i) {
+		while (dirty != 0) {
 
-				player1Surrounded &= (surrounding[i] == null
-						|| surrounding[i].mLetterState == LetterState.PLAYER1_OWNED || surrounding[i].mLetterState == LetterState.PLAYER1_SURROUNDED);
+			int tile = Integer.numberOfTrailingZeros(dirty);
+			int bit = 1 << tile;
+			dirty &= ~bit;
 
-				player2Surrounded &= (surrounding[i] == null
-						|| surrounding[i].mLetterState == LetterState.PLAYER2_OWNED || surrounding[i].mLetterState == LetterState.PLAYER2_SURROUNDED);
+			int neighbours = NEIGHBOURS[tile];
 
-			}
+			int p1 = mPlayer1Tiles;
+			int p2 = mPlayer2Tiles;
+
+			boolean player1Surrounded = (neighbours & ~p1) == 0;
+			boolean player2Surrounded = (neighbours & ~p2) == 0;
+
+			boolean surrounded = (mSurroundedTiles & bit) != 0;
+			boolean wasPlayer1Surrounded = surrounded && (p1 & bit) != 0;
+			boolean wasPlayer2Surrounded = surrounded && (p2 & bit) != 0;
 
-			// Owners: player 1: 1, player 2: -1, neutral: 0
-			int oldOwner = getOwner(tile);
 			if (player1Surrounded) {
-				mGrid[tile].mLetterState = LetterState.PLAYER1_SURROUNDED;
-			} else if (!player1Surrounded
-					&& currentTileState == LetterState.PLAYER1_SURROUNDED) {
-				mGrid[tile].mLetterState = LetterState.PLAYER1_OWNED;
+				setLetterState(tile, LetterState.PLAYER1_SURROUNDED);
+			} else if (wasPlayer1Surrounded) {
+				setLetterState(tile, LetterState.PLAYER1_OWNED);
 			} else if (player2Surrounded) {
-				mGrid[tile].mLetterState = LetterState.PLAYER2_SURROUNDED;
-			} else if (!player2Surrounded
-					&& currentTileState == LetterState.PLAYER2_SURROUNDED) {
-				mGrid[tile].mLetterState = LetterState.PLAYER2_OWNED;
-			}
-			int newOwner = getOwner(tile);
-			if (newOwner != oldOwner) {
-				if (oldOwner == 1) {
-					mPlayer1Points -= oldOwner;
-				} else {
-					mPlayer2Points += oldOwner;
-				}
-				if (newOwner == 1) {
-					mPlayer1Points += newOwner;
-				} else {
-					mPlayer2Points -= newOwner;
-				}
+				setLetterState(tile, LetterState.PLAYER2_SURROUNDED);
+			} else if (wasPlayer2Surrounded) {
+				setLetterState(tile, LetterState.PLAYER2_OWNED);
 			}
+
+			// A change of owner can capture or release the neighbours still
+			// to come
+			if (mPlayer1Tiles != p1 || mPlayer2Tiles != p2)
+				dirty |= neighbours & -(bit << 1);
 		}
 	}
 
-	/**
-	 * Look up who owns a tile.
-	 * @param tile - the index of the tile to look at.
-	 * @return 1 for player 1, -1 for player 2, 0 for neutral.
+	/*
+	 * @return the tiles whose neighbours are all in tiles.
 	 */
-	private int getOwner(int tile) {
-		int oldOwner;
-		switch (mGrid[tile].mLetterState) {
-		case PLAYER1_SURROUNDED:
-		case PLAYER1_OWNED:
-			oldOwner = 1;
-			break;
-		case PLAYER2_SURROUNDED:
-		case PLAYER2_OWNED:
-			oldOwner = -1;
-			break;
-		default:
-			oldOwner = 0;
-			break;
+	private static int surroundedBy(int tiles) {
+
+		int others = ~tiles & ALL_TILES;
+
+		int nextToOthers = ((others << 1) & ~LEFT_COLUMN)
+				| ((others >>> 1) & ~RIGHT_COLUMN)
+				| (others << GRID_COLUMNS)
+				| (others >>> GRID_COLUMNS);
+
+		return ~nextToOthers & ALL_TILES;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+
+		in.defaultReadObject();
+
+		if (mGrid != null) {
+			// Saved in the original format, so move the letters and states
+			// into the bitboards
+			mLetters = new char[GRID_ITEMS];
+			for (int i = 0; i < GRID_ITEMS; ++i) {
+				mLetters[i] = mGrid[i].mLetter;
+				setLetterState(i, mGrid[i].mLetterState);
+			}
+			mGrid = null;
 		}
-		return oldOwner;
+
+		if (mLetters == null || mLetters.length != GRID_ITEMS)
+			throw new IOException("GameModel is corrupt");
+
+		mHash = Zobrist.hash(this);
+	}
+
+	private TurnResult applyRules(CharSequence word) {
+
+		TurnResult ret = applyGameRules(word);
+		if (ret != TurnResult.SUCCESS)
+			return ret;
+
+		// Rule 4. Word must be in the English dictionary
+		if (!isInDictionary(word))
+			return TurnResult.WORD_NOT_IN_DICTIONARY;
+
+		return TurnResult.SUCCESS;
 	}
 
-	private TurnResult applyRules(String word) {
+	/*
+	 * The rules that depend on the words played so far.
+	 */
+	private TurnResult applyGameRules(CharSequence word) {
 
 		// Rule 1. Word must be two or more characters
 		if (word.length() < 2)
@@ -421,12 +808,16 @@ public class GameModel implements Serializable {
 		if (mPlayedWords.containsPrefix(word))
 			return TurnResult.WORD_IS_PREFIX_OF_PREVIOUS_TURN;
 
-		// Rule 4. Word must be in the English dictionary
-		WordList db = new WordList(mContext);
-		if (!db.wordInDictionary(word))
-			return TurnResult.WORD_NOT_IN_DICTIONARY;
-
 		return TurnResult.SUCCESS;
 	}
 
+	/*
+	 * Only words that fit on the board can be spelt, so the board's words are
+	 * enough. They never change once the game has been created, so this is
+	 * safe to call from any thread.
+	 */
+	private boolean isInDictionary(CharSequence word) {
+		return mBoardWords.contains(word);
+	}
+
 }
@@ -0,0 +1,130 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.List;
+
+import com.andrewpmsmith.movabletype.model.GameModel.GameResult;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+
+/**
+ * A turn that can be played on a GameModel with apply(..) and taken back with
+ * undo(..): either a word, given as the indexes of its tiles in order, or a
+ * pass, which has no tiles.
+ *
+ * Besides its tiles, a move holds what applying it changed, so that undoing
+ * it needs no copy of the game. Applying and undoing a move allocates
+ * nothing, and a move can be refilled with set(..) and reused, so a search
+ * can keep one move per level and explore any number of positions without
+ * creating garbage. A move can only be applied to one game at a time, and
+ * must be undone before it is applied again.
+ */
+public final class Move {
+
+	private final int[] mTiles = new int[GameModel.GRID_ITEMS];
+	private int mLength;
+
+	// The letters of the tiles, spelt out when the move is applied
+	final StringBuilder mWord = new StringBuilder(GameModel.GRID_ITEMS);
+
+	// The state of the game before the move was applied
+	boolean mApplied;
+	int mPlayer1Tiles;
+	int mPlayer2Tiles;
+	int mSurroundedTiles;
+	GameState mGameState;
+	GameResult mGameResult;
+	boolean mHasPassed;
+	long mHash;
+	List<Integer> mSelectedWord;
+
+	/**
+	 * Create a pass.
+	 */
+	public Move() {
+	}
+
+	public Move(int[] tiles, int length) {
+		set(tiles, length);
+	}
+
+	public Move(List<Integer> tiles) {
+		set(tiles);
+	}
+
+	/**
+	 * Replace the tiles of a move that isn't applied. A length of zero makes
+	 * it a pass.
+	 */
+	public void set(int[] tiles, int length) {
+		set(tiles, 0, length);
+	}
+
+	/**
+	 * As set(int[], int), taking the tiles from tiles[offset] onwards.
+	 */
+	public void set(int[] tiles, int offset, int length) {
+
+		if (mApplied)
+			throw new IllegalStateException("Move is applied");
+		if (length > mTiles.length)
+			throw new IllegalArgumentException("Move is too long");
+
+		System.arraycopy(tiles, offset, mTiles, 0, length);
+		mLength = length;
+	}
+
+	public void set(List<Integer> tiles) {
+
+		if (mApplied)
+			throw new IllegalStateException("Move is applied");
+		if (tiles.size() > mTiles.length)
+			throw new IllegalArgumentException("Move is too long");
+
+		mLength = 0;
+		for (int tile : tiles) {
+			mTiles[mLength++] = tile;
+		}
+	}
+
+	public boolean isPass() {
+		return mLength == 0;
+	}
+
+	public int getLength() {
+		return mLength;
+	}
+
+	public int getTile(int i) {
+		return mTiles[i];
+	}
+
+	/**
+	 * @return a mask with bit i set if the move uses the tile at index i.
+	 */
+	public int getTileMask() {
+
+		int mask = 0;
+		for (int i = 0; i < mLength; ++i) {
+			mask |= 1 << mTiles[i];
+		}
+
+		return mask;
+	}
+
+	public boolean isApplied() {
+		return mApplied;
+	}
+
+	/*
+	 * Spell the move from the letters of a grid into mWord.
+	 */
+	CharSequence spell(char[] letters) {
+
+		mWord.setLength(0);
+		for (int i = 0; i < mLength; ++i) {
+			mWord.append(letters[mTiles[i]]);
+		}
+
+		return mWord;
+	}
+
+}
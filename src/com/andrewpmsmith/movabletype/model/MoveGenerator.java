@@ -0,0 +1,244 @@
+package com.andrewpmsmith.movabletype.model;
+
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+
+/**
+ * Lists the words that can legally be played in a game's current position,
+ * one call to next() at a time, along with the tiles to play each one on.
+ *
+ * The candidates are the game's board words, which are every dictionary word
+ * the grid can spell. A word is skipped if it has been played, or is the
+ * start of a word that has, or is shorter than two letters.
+ *
+ * When a letter appears on several tiles, each word is given the tiles that
+ * score most: an opponent's tile if one is free, then an unplayed tile, then
+ * the mover's own or a surrounded tile. The swing is what the word is worth
+ * to the mover as getPoints(..) would count it, before captures: one point
+ * for each unplayed tile claimed and two for each tile taken from the
+ * opponent.
+ *
+ * Nothing is allocated while generating, and a generator can be restarted
+ * for a new position. Passing is always legal and isn't listed. The game may
+ * change between calls to next() so long as it is back in the same position
+ * each time, so a search can apply and undo each word as it is found.
+ */
+public final class MoveGenerator {
+
+	private static final int ALPHABET_SIZE = 26;
+	private static final int FIRST_CHAR = 'A';
+
+	private final GameModel mGame;
+	private final WordTrie.WordIterator mWords;
+
+	// The tiles carrying each letter, best for the mover first
+	private final int[] mLetterTiles = new int[GameModel.GRID_ITEMS];
+	private final int[] mLetterStarts = new int[ALPHABET_SIZE + 1];
+	private final int[] mTileValues = new int[GameModel.GRID_ITEMS];
+	private final int[] mUsed = new int[ALPHABET_SIZE];
+
+	private final Letters mWord = new Letters();
+	private final int[] mTiles = new int[GameModel.GRID_ITEMS];
+	private int mSwing;
+	private int mCount;
+	private boolean mGameOver;
+
+	public MoveGenerator(GameModel game) {
+		mGame = game;
+		mWords = game.getBoardWords().iterateWords();
+		restart();
+	}
+
+	/**
+	 * Start again from the game's current position.
+	 */
+	public void restart() {
+
+		mWords.restart(null, null, WordTrie.NO_LIMIT);
+		mCount = 0;
+
+		GameState state = mGame.getGameState();
+		mGameOver = (state == GameState.GAME_OVER);
+		if (mGameOver)
+			return;
+
+		int mover = (state == GameState.PLAYER1_TURN) ? GameModel.PLAYER1
+				: GameModel.PLAYER2;
+		int opponent = (mover == GameModel.PLAYER1) ? GameModel.PLAYER2
+				: GameModel.PLAYER1;
+		int opponentTiles = mGame.getOwnedTiles(opponent);
+		int claimable = ~mGame.getOwnedTiles(mover)
+				& ~mGame.getSurroundedTiles();
+
+		// Bucket the tiles by letter, then order each bucket by value. The
+		// buckets hold a few tiles at most, so an insertion sort will do.
+		for (int i = 0; i <= ALPHABET_SIZE; ++i) {
+			mLetterStarts[i] = 0;
+		}
+		for (int tile = 0; tile < GameModel.GRID_ITEMS; ++tile) {
+			++mLetterStarts[mGame.getLetter(tile) - FIRST_CHAR + 1];
+
+			int bit = 1 << tile;
+			if ((claimable & bit) == 0)
+				mTileValues[tile] = 0;
+			else if ((opponentTiles & bit) != 0)
+				mTileValues[tile] = 2;
+			else
+				mTileValues[tile] = 1;
+		}
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			mLetterStarts[i + 1] += mLetterStarts[i];
+			mUsed[i] = mLetterStarts[i];
+		}
+		for (int tile = 0; tile < GameModel.GRID_ITEMS; ++tile) {
+
+			int letter = mGame.getLetter(tile) - FIRST_CHAR;
+			int j = mUsed[letter]++;
+			while (j > mLetterStarts[letter]
+					&& mTileValues[mLetterTiles[j - 1]] < mTileValues[tile]) {
+				mLetterTiles[j] = mLetterTiles[j - 1];
+				--j;
+			}
+			mLetterTiles[j] = tile;
+		}
+	}
+
+	/**
+	 * Move to the next legal word.
+	 *
+	 * @return false when there are no more.
+	 */
+	public boolean next() {
+
+		if (mGameOver)
+			return false;
+
+		WordTrie playedWords = mGame.getPlayedWords();
+
+		while (mWords.next()) {
+
+			if (mWords.getLength() < 2)
+				continue;
+
+			mWord.set(mWords.getLetters(), mWords.getLength());
+
+			// A played word is a prefix of itself, so this covers both rules
+			if (playedWords.containsPrefix(mWord))
+				continue;
+
+			assignTiles();
+			++mCount;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return the letters of the current word. Only the first getLength() of
+	 *         them are valid, and they are overwritten by next().
+	 */
+	public char[] getLetters() {
+		return mWords.getLetters();
+	}
+
+	public int getLength() {
+		return mWords.getLength();
+	}
+
+	/**
+	 * @return the current word. Creates a new String each time.
+	 */
+	public String getWord() {
+		return mWords.getWord();
+	}
+
+	/**
+	 * @return the tile the i'th letter of the current word is played on.
+	 */
+	public int getTile(int i) {
+		return mTiles[i];
+	}
+
+	/**
+	 * @return the points the current word is worth to the mover, before
+	 *         captures.
+	 */
+	public int getSwing() {
+		return mSwing;
+	}
+
+	/**
+	 * Set move to play the current word.
+	 */
+	public void getMove(Move move) {
+		move.set(mTiles, mWords.getLength());
+	}
+
+	/**
+	 * @return the number of words returned since the last restart().
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/*
+	 * Give each letter of the current word the best tile left for it.
+	 * Letters never share tiles, so taking the best for each in turn is
+	 * the best overall.
+	 */
+	private void assignTiles() {
+
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			mUsed[i] = mLetterStarts[i];
+		}
+
+		char[] letters = mWords.getLetters();
+		int length = mWords.getLength();
+		int swing = 0;
+
+		for (int i = 0; i < length; ++i) {
+			int tile = mLetterTiles[mUsed[letters[i] - FIRST_CHAR]++];
+			mTiles[i] = tile;
+			swing += mTileValues[tile];
+		}
+
+		mSwing = swing;
+	}
+
+	/*
+	 * A view of the first length letters of a buffer, so that the played
+	 * words can be checked without creating a String.
+	 */
+	private static final class Letters implements CharSequence {
+
+		private char[] mBuffer;
+		private int mLength;
+
+		void set(char[] buffer, int length) {
+			mBuffer = buffer;
+			mLength = length;
+		}
+
+		@Override
+		public int length() {
+			return mLength;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return mBuffer[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(mBuffer, start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(mBuffer, 0, mLength);
+		}
+
+	}
+
+}
@@ -0,0 +1,248 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An index of the letters used by each word in the dictionary, for finding
+ * every word that can be spelt from a set of tiles.
+ *
+ * Each word's letter counts are held in packed primitive arrays: an int with
+ * one bit set for each letter the word uses, and two longs holding the count
+ * of each letter in a nibble (letters A to P in the first, Q to Z in the
+ * second). A query is a single pass over these arrays. The presence mask
+ * rejects most words with one test, and the survivors are checked by
+ * comparing all of the nibbles at once, so the scan does very little
+ * branching and never touches the words themselves until one matches.
+ *
+ * The top bit of each nibble is used as a guard during the comparison, so a
+ * word can use a letter at most seven times. No English word comes close.
+ * Instances are immutable and safe to share between threads.
+ */
+public class SignatureIndex {
+
+	private static final char FIRST_CHAR = 'A';
+	private static final int ALPHABET_SIZE = 26;
+	private static final int LETTERS_PER_LONG = 16;
+
+	static final int MAX_LETTER_COUNT = 7;
+
+	// The top bit of every nibble
+	private static final long GUARD_BITS = 0x8888888888888888L;
+
+	private final int mWordCount;
+
+	private final int[] mMasks;
+	// Two entries per word, letters 0-15 then letters 16-25
+	private final long[] mCounts;
+
+	// Word i is mLetters[mOffsets[i]] up to mLetters[mOffsets[i + 1]]
+	private final char[] mLetters;
+	private final int[] mOffsets;
+
+	/**
+	 * Index a list of words. Words that are not upper case A to Z, or that
+	 * use a letter more than seven times, are skipped.
+	 */
+	public SignatureIndex(List<String> words) {
+
+		int capacity = words.size();
+		int letterTotal = 0;
+		for (String word : words) {
+			letterTotal += word.length();
+		}
+
+		int[] masks = new int[capacity];
+		long[] counts = new long[capacity * 2];
+		char[] letters = new char[letterTotal];
+		int[] offsets = new int[capacity + 1];
+
+		int[] letterCounts = new int[ALPHABET_SIZE];
+		int wordCount = 0;
+		int letterCount = 0;
+
+		for (String word : words) {
+
+			if (!DawgBuilder.isValidWord(word))
+				continue;
+
+			countLetters(word, letterCounts);
+
+			boolean tooMany = false;
+			for (int i = 0; i < ALPHABET_SIZE; ++i) {
+				if (letterCounts[i] > MAX_LETTER_COUNT)
+					tooMany = true;
+			}
+			if (tooMany)
+				continue;
+
+			masks[wordCount] = presenceMask(letterCounts);
+			counts[wordCount * 2] = packCounts(letterCounts, 0);
+			counts[wordCount * 2 + 1] = packCounts(letterCounts,
+					LETTERS_PER_LONG);
+
+			word.getChars(0, word.length(), letters, letterCount);
+			letterCount += word.length();
+			offsets[++wordCount] = letterCount;
+
+		}
+
+		mWordCount = wordCount;
+		mMasks = masks;
+		mCounts = counts;
+		mLetters = letters;
+		mOffsets = offsets;
+
+	}
+
+	/**
+	 * Find every word that can be spelt using each letter no more times than
+	 * it appears in letterCounts.
+	 *
+	 * @param letterCounts
+	 *            the number of each letter available, indexed from 'A'.
+	 * @return the words in the order they were indexed.
+	 */
+	public List<String> findFormableWords(int[] letterCounts) {
+
+		List<String> words = new ArrayList<String>();
+
+		int[] matches = new int[mWordCount];
+		int matchCount = findFormable(letterCounts, matches);
+
+		for (int i = 0; i < matchCount; ++i) {
+			words.add(getWord(matches[i]));
+		}
+
+		return words;
+	}
+
+	/**
+	 * @return the number of words that can be spelt from letterCounts.
+	 */
+	public int countFormableWords(int[] letterCounts) {
+		return findFormable(letterCounts, null);
+	}
+
+	/**
+	 * Scan the index for the words that can be spelt from letterCounts.
+	 *
+	 * @param matches
+	 *            receives the index of each word found, or null if only the
+	 *            number of words is needed. Must have room for every word.
+	 * @return the number of words found.
+	 */
+	public int findFormable(int[] letterCounts, int[] matches) {
+
+		// Words never use a letter more than MAX_LETTER_COUNT times, so
+		// clamping the available counts to fit a nibble loses nothing
+		int[] clamped = new int[ALPHABET_SIZE];
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			clamped[i] = Math.min(letterCounts[i], MAX_LETTER_COUNT);
+		}
+
+		int missing = ~presenceMask(clamped);
+		long available0 = packCounts(clamped, 0) | GUARD_BITS;
+		long available1 = packCounts(clamped, LETTERS_PER_LONG) | GUARD_BITS;
+
+		final int[] masks = mMasks;
+		final long[] counts = mCounts;
+		final int wordCount = mWordCount;
+
+		int found = 0;
+
+		for (int i = 0; i < wordCount; ++i) {
+
+			if ((masks[i] & missing) != 0)
+				continue;
+
+			// Every nibble of available has its guard bit set, and a word's
+			// count never reaches the guard bit, so no nibble borrows from
+			// its neighbour. A guard bit survives the subtraction exactly
+			// when there are enough of that letter.
+			long fits = (available0 - counts[i * 2])
+					& (available1 - counts[i * 2 + 1]);
+			if ((fits & GUARD_BITS) != GUARD_BITS)
+				continue;
+
+			if (matches != null)
+				matches[found] = i;
+			++found;
+
+		}
+
+		return found;
+	}
+
+	public String getWord(int index) {
+		return new String(mLetters, mOffsets[index], mOffsets[index + 1]
+				- mOffsets[index]);
+	}
+
+	public int getWordLength(int index) {
+		return mOffsets[index + 1] - mOffsets[index];
+	}
+
+	/**
+	 * @return a mask with bit i set if the word uses the letter 'A' + i.
+	 */
+	public int getLetterMask(int index) {
+		return mMasks[index];
+	}
+
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+	/**
+	 * @return the approximate number of bytes held by the index.
+	 */
+	public int getSizeInBytes() {
+		return mMasks.length * 4 + mCounts.length * 8 + mLetters.length * 2
+				+ mOffsets.length * 4;
+	}
+
+	/**
+	 * Count the letters in word, which must be upper case A to Z.
+	 *
+	 * @param letterCounts
+	 *            receives the count of each letter, indexed from 'A'.
+	 */
+	public static void countLetters(CharSequence word, int[] letterCounts) {
+
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			letterCounts[i] = 0;
+		}
+
+		for (int i = 0; i < word.length(); ++i) {
+			++letterCounts[word.charAt(i) - FIRST_CHAR];
+		}
+	}
+
+	private static int presenceMask(int[] letterCounts) {
+
+		int mask = 0;
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			if (letterCounts[i] > 0)
+				mask |= 1 << i;
+		}
+
+		return mask;
+	}
+
+	/*
+	 * Pack the counts of up to sixteen letters, starting with firstLetter,
+	 * into the nibbles of a long.
+	 */
+	private static long packCounts(int[] letterCounts, int firstLetter) {
+
+		long packed = 0;
+		int last = Math.min(firstLetter + LETTERS_PER_LONG, ALPHABET_SIZE);
+		for (int i = firstLetter; i < last; ++i) {
+			packed |= (long) letterCounts[i] << ((i - firstLetter) * 4);
+		}
+
+		return packed;
+	}
+
+}
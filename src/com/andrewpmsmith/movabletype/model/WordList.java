@@ -1,17 +1,30 @@
 package com.andrewpmsmith.movabletype.model;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Locale;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
-import android.content.ContentValues;
 import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteConstraintException;
+import android.content.res.AssetFileDescriptor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.andrewpmsmith.movabletype.R;
 
@@ -21,15 +34,30 @@ import com.andrewpmsmith.movabletype.R;
  * 
  * The database is initially constructed from a list of words contained in a 
  * text file.
+ * 
+ * Lookups are answered by a Dawg that stays resident for the life of the
+ * process, so checking a word never has to open the database. The Dawg is
+ * compiled from the same text file at build time and shipped as the asset
+ * wordlist.dawg, which is memory mapped rather than parsed.
  *
  * @author Andrew Smith
  */
 public class WordList extends SQLiteOpenHelper {
 
-	private static final int DATABASE_VERSION = 1;
+	private static final int DATABASE_VERSION = 2;
 	private static final String DATABASE_NAME = "wordlist";
 	private static final String TABLE_WORDS = "words";
 	private static final String KEY_WORD = "word";
+	private static final String DICTIONARY_ASSET = "wordlist.dawg";
+	private static final int COPY_BUFFER_SIZE = 16 * 1024;
+	private static final String WITHOUT_ROWID_MIN_VERSION = "3.8.2";
+	private static final String FILTER_SUFFIX = ".bloom";
+
+	private static Dawg sDictionary;
+	private static WordLookup sLookup;
+	private static SignatureIndex sSignatureIndex;
+	private static BoardGenerator sBoardGenerator;
+	private static AnagramIndex sAnagramIndex;
 
 	protected Context mContext;
 
@@ -69,30 +97,266 @@ public class WordList extends SQLiteOpenHelper {
 
 		String CREATE_WORD_TABLE = "CREATE TABLE " + TABLE_WORDS + "("
 				+ KEY_WORD + " TEXT PRIMARY KEY" + ")";
+
+		// Without a rowid the words are stored directly in the primary key's
+		// b-tree instead of in a table plus a separate index
+		if (supportsWithoutRowid(db))
+			CREATE_WORD_TABLE += " WITHOUT ROWID";
+
 		db.execSQL(CREATE_WORD_TABLE);
 
 	}
 
 	/*
-	 * Prepare a word for storage in the DB. Reject words less than two letters
-	 * in length. Reject words with non-alphabetical characters (e.g.
-	 * apostrophes/hyphens). Convert words to upper case.
+	 * WITHOUT ROWID tables need SQLite 3.8.2, which shipped with Android 5.0.
 	 */
-	private String normaliseWord(String word) {
+	private static boolean supportsWithoutRowid(SQLiteDatabase db) {
 
-		if (word == null)
-			return null;
-		if (word.length() < 2)
-			return null;
-		word = word.toUpperCase(Locale.getDefault());
-		if (!word.matches("^[A-Z]+$"))
-			return null;
-		return word;
+		SQLiteStatement query = db.compileStatement("SELECT sqlite_version()");
+		String version;
+		try {
+			version = query.simpleQueryForString();
+		} finally {
+			query.close();
+		}
+
+		return compareVersions(version, WITHOUT_ROWID_MIN_VERSION) >= 0;
+
+	}
+
+	/*
+	 * Compare dotted version strings such as "3.7.11" numerically.
+	 */
+	static int compareVersions(String a, String b) {
+
+		String[] as = a.split("\\.");
+		String[] bs = b.split("\\.");
+
+		for (int i = 0; i < Math.max(as.length, bs.length); ++i) {
+			int an = (i < as.length) ? parseVersionPart(as[i]) : 0;
+			int bn = (i < bs.length) ? parseVersionPart(bs[i]) : 0;
+			if (an != bn)
+				return (an < bn) ? -1 : 1;
+		}
+
+		return 0;
+
+	}
+
+	private static int parseVersionPart(String part) {
+		try {
+			return Integer.parseInt(part.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Get the process wide dictionary, loading it if this is the first call.
+	 * Normally this maps the dictionary that was compiled into the APK at
+	 * build time, which only takes a few milliseconds. If that fails the
+	 * dictionary is compiled from the raw word list instead, which takes a
+	 * second or two, so the first call should be made from a background
+	 * thread.
+	 */
+	public static synchronized Dawg getDictionary(Context context) {
+
+		if (sDictionary == null) {
+			try {
+				sDictionary = loadCompiledDictionary(context);
+			} catch (IOException e) {
+				e.printStackTrace();
+				sDictionary = compileDictionary(context);
+			}
+		}
+
+		return sDictionary;
+
+	}
+
+	/**
+	 * Get the process wide signature index for the dictionary, building it if
+	 * this is the first call. This loads the dictionary too, so the first
+	 * call should be made from a background thread.
+	 */
+	public static synchronized SignatureIndex getSignatureIndex(Context context) {
+
+		if (sSignatureIndex == null) {
+			sSignatureIndex = new SignatureIndex(getDictionary(context)
+					.getWords());
+		}
+
+		return sSignatureIndex;
+
+	}
+
+	/**
+	 * Get the process wide generator of new boards, which reuses its buffers
+	 * from one board to the next. Like getSignatureIndex(..), the first call
+	 * should be made from a background thread.
+	 */
+	public static synchronized BoardGenerator getBoardGenerator(
+			Context context) {
+
+		if (sBoardGenerator == null) {
+			sBoardGenerator = new BoardGenerator(getSignatureIndex(context));
+		}
+
+		return sBoardGenerator;
+
+	}
+
+	/**
+	 * Get the process wide anagram index for the dictionary, building it if
+	 * this is the first call. This loads the dictionary too, so the first
+	 * call should be made from a background thread.
+	 */
+	public static synchronized AnagramIndex getAnagramIndex(Context context) {
+
+		if (sAnagramIndex == null) {
+			sAnagramIndex = new AnagramIndex(getDictionary(context).getWords());
+		}
+
+		return sAnagramIndex;
+
+	}
+
+	private static Dawg loadCompiledDictionary(Context context)
+			throws IOException {
+
+		// An uncompressed asset can be mapped straight out of the APK
+		try {
+			AssetFileDescriptor afd = context.getAssets().openFd(
+					DICTIONARY_ASSET);
+			FileInputStream in = afd.createInputStream();
+			try {
+				return Dawg.read(in.getChannel().map(MapMode.READ_ONLY,
+						afd.getStartOffset(), afd.getLength()));
+			} finally {
+				in.close();
+				afd.close();
+			}
+		} catch (FileNotFoundException e) {
+			// The asset was compressed by the packager, so unpack a copy
+		}
+
+		File file = new File(context.getFilesDir(), DICTIONARY_ASSET);
+		if (!isUnpackedDictionaryCurrent(context, file)) {
+			unpackDictionary(context, file);
+		}
+
+		try {
+			return readUnpackedDictionary(file);
+		} catch (IOException e) {
+			// The copy was damaged after it was unpacked, so unpack it again
+			e.printStackTrace();
+			unpackDictionary(context, file);
+			return readUnpackedDictionary(file);
+		}
+
+	}
+
+	private static Dawg readUnpackedDictionary(File file) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return Dawg.read(raf.getChannel().map(MapMode.READ_ONLY, 0,
+					raf.length()));
+		} finally {
+			raf.close();
+		}
 
 	}
 
 	/*
-	 * Add the word list to the DB. This may take several minutes.
+	 * The unpacked copy is current if its header, which includes a checksum
+	 * of the whole graph, matches the header of the asset. Whether the rest
+	 * of the copy still matches the checksum is left to Dawg.read(..).
+	 */
+	private static boolean isUnpackedDictionaryCurrent(Context context,
+			File file) throws IOException {
+
+		if (!file.exists())
+			return false;
+
+		byte[] assetHeader = new byte[Dawg.HEADER_SIZE];
+		byte[] fileHeader = new byte[Dawg.HEADER_SIZE];
+
+		DataInputStream asset = new DataInputStream(context.getAssets().open(
+				DICTIONARY_ASSET));
+		try {
+			asset.readFully(assetHeader);
+		} finally {
+			asset.close();
+		}
+
+		DataInputStream copy = new DataInputStream(new FileInputStream(file));
+		try {
+			copy.readFully(fileHeader);
+		} catch (EOFException e) {
+			return false;
+		} finally {
+			copy.close();
+		}
+
+		return Arrays.equals(assetHeader, fileHeader);
+
+	}
+
+	private static void unpackDictionary(Context context, File file)
+			throws IOException {
+
+		// Write to a temporary file and rename it so that a partial copy is
+		// never mistaken for the real thing
+		File temp = new File(file.getPath() + ".tmp");
+
+		InputStream in = context.getAssets().open(DICTIONARY_ASSET);
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			byte[] buffer = new byte[COPY_BUFFER_SIZE];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+			out.close();
+		}
+
+		if (!temp.renameTo(file))
+			throw new IOException("Could not unpack dictionary to " + file);
+
+	}
+
+	private static Dawg compileDictionary(Context context) {
+
+		InputStream is = context.getResources().openRawResource(R.raw.wordlist);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+
+		Dawg dawg = null;
+		try {
+			dawg = DawgCompiler.compile(reader);
+		} catch (IOException e) {
+			e.printStackTrace();
+			dawg = new DawgBuilder().build();
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		return dawg;
+
+	}
+
+	/*
+	 * Add the word list to the DB. The file is read and normalised on a
+	 * separate thread which hands batches of words to this one, so parsing
+	 * overlaps with the inserts. Every word goes through the same compiled
+	 * statement inside a single transaction, and duplicates are skipped by
+	 * the statement itself rather than by catching exceptions.
 	 */
 	public void addWords(SQLiteDatabase db) {
 
@@ -100,50 +364,249 @@ public class WordList extends SQLiteOpenHelper {
 				.openRawResource(R.raw.wordlist);
 		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
 
-		db.beginTransaction();
+		WordParser parser = new WordParser(reader);
+		parser.start();
+
+		SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO "
+				+ TABLE_WORDS + " (" + KEY_WORD + ") VALUES (?)");
 
-		String line;
+		db.beginTransaction();
 		try {
-			while ((line = reader.readLine()) != null) {
+			String[] batch;
+			while ((batch = parser.nextBatch()) != WordParser.END_OF_WORDS) {
+				for (String word : batch) {
+					if (word == null)
+						break;
+					insert.bindString(1, word);
+					insert.execute();
+				}
+			}
+			db.setTransactionSuccessful();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			db.endTransaction();
+			insert.close();
+			parser.interrupt();
+		}
+
+		if (parser.getError() != null) {
+			parser.getError().printStackTrace();
+		}
+
+	}
+
+	/*
+	 * Reads a word list on its own thread, passing normalised words back in
+	 * batches. A batch that isn't full is terminated by a null entry.
+	 */
+	private static class WordParser extends Thread {
+
+		static final String[] END_OF_WORDS = new String[0];
+
+		private static final int BATCH_SIZE = 512;
+		private static final int QUEUED_BATCHES = 8;
+
+		private final BufferedReader mReader;
+		private final BlockingQueue<String[]> mBatches =
+				new ArrayBlockingQueue<String[]>(QUEUED_BATCHES);
+		private volatile Exception mError;
 
-				String word = normaliseWord(line);
+		public WordParser(BufferedReader reader) {
+			super("WordParser");
+			mReader = reader;
+		}
+
+		public String[] nextBatch() throws InterruptedException {
+			return mBatches.take();
+		}
+
+		/**
+		 * @return the exception that stopped the parse early, or null.
+		 */
+		public Exception getError() {
+			return mError;
+		}
+
+		@Override
+		public void run() {
+
+			try {
+				try {
+					parse();
+				} catch (IOException e) {
+					// Pass on what was read so far, as the old loader did
+					mError = e;
+				} catch (RuntimeException e) {
+					// Likewise, so that the consumer isn't left waiting for
+					// words that will never come
+					mError = e;
+				}
+				mBatches.put(END_OF_WORDS);
+			} catch (InterruptedException e) {
+				// The consumer has given up
+			} finally {
+				try {
+					mReader.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+
+		}
+
+		private void parse() throws IOException, InterruptedException {
+
+			String[] batch = new String[BATCH_SIZE];
+			int count = 0;
+
+			String line;
+			while ((line = mReader.readLine()) != null) {
+
+				String word = DawgCompiler.normaliseWord(line);
 				if (word == null)
 					continue;
 
-				ContentValues values = new ContentValues();
-				values.put(KEY_WORD, word);
-				try {
-					db.insert(TABLE_WORDS, null, values);
-				} catch (SQLiteConstraintException e) {
-					// Duplicate word in file, or from prev attempt to populate
-					// the word list. Consume exception and keep going
+				batch[count++] = word;
+				if (count == BATCH_SIZE) {
+					mBatches.put(batch);
+					batch = new String[BATCH_SIZE];
+					count = 0;
 				}
 
 			}
+
+			if (count > 0)
+				mBatches.put(batch);
+
+		}
+
+	} // class WordParser
+
+	/**
+	 * Get the process wide handle for looking words up in the word table. The
+	 * handle keeps its connection open for the life of the process. The first
+	 * call creates and populates the table if needed, so it should be made
+	 * from a background thread.
+	 */
+	public static synchronized WordLookup getLookup(Context context) {
+
+		if (sLookup == null) {
+			WordList helper = new WordList(context.getApplicationContext());
+			sLookup = new WordLookup(helper.getReadableDatabase(), TABLE_WORDS,
+					KEY_WORD);
+		}
+
+		return sLookup;
+
+	}
+
+	/**
+	 * Load the Bloom filter for the word table at the given false positive
+	 * rate, for use with WordLookup.setFilter(..). The filter is saved next to
+	 * the database the first time it is built and is rebuilt if the word list
+	 * or the requested rate changes.
+	 */
+	public static synchronized BloomFilter loadLookupFilter(Context context,
+			double falsePositiveRate) {
+
+		File file = new File(context.getDatabasePath(DATABASE_NAME)
+				.getParentFile(), DATABASE_NAME + FILTER_SUFFIX);
+		Dawg dictionary = getDictionary(context);
+
+		try {
+			BloomFilter filter = readLookupFilter(file,
+					dictionary.getChecksum(), falsePositiveRate);
+			if (filter != null)
+				return filter;
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		db.setTransactionSuccessful();
-		db.endTransaction();
+
+		BloomFilter filter = BloomFilter.create(dictionary.getWordCount(),
+				falsePositiveRate);
+
+		InputStream is = context.getResources().openRawResource(R.raw.wordlist);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String word = DawgCompiler.normaliseWord(line);
+				if (word != null)
+					filter.add(word);
+			}
+		} catch (IOException e) {
+			// A filter missing words would reject real words, so don't use it
+			e.printStackTrace();
+			return null;
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		try {
+			writeLookupFilter(file, dictionary.getChecksum(),
+					falsePositiveRate, filter);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		return filter;
+
+	}
+
+	/*
+	 * Returns null if there is no saved filter or it is out of date.
+	 */
+	private static BloomFilter readLookupFilter(File file, int checksum,
+			double falsePositiveRate) throws IOException {
+
+		if (!file.exists())
+			return null;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != checksum
+					|| in.readDouble() != falsePositiveRate)
+				return null;
+			return BloomFilter.read(in);
+		} finally {
+			in.close();
+		}
+
+	}
+
+	private static void writeLookupFilter(File file, int checksum,
+			double falsePositiveRate, BloomFilter filter) throws IOException {
+
+		File temp = new File(file.getPath() + ".tmp");
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp)));
+		try {
+			out.writeInt(checksum);
+			out.writeDouble(falsePositiveRate);
+			filter.write(out);
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(file))
+			throw new IOException("Could not save filter to " + file);
 
 	}
 
 	public boolean wordInDictionary(String word) {
 		
-		if (word==null || !word.matches("^[A-Z]+$")) {
+		if (word==null || !DawgBuilder.isValidWord(word)) {
 			return false;
 		}
 		
-		SQLiteDatabase db = getReadableDatabase();
-
-		Cursor c = db.rawQuery("SELECT * FROM " + TABLE_WORDS + " WHERE "
-				+ KEY_WORD + "= '" + word + "'", null);
-		boolean ret = (c != null && c.getCount() > 0);
-
-		c.close();
-		db.close();
-
-		return ret;
+		return getDictionary(mContext).contains(word);
 	}
 
 }
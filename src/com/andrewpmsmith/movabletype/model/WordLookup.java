@@ -0,0 +1,137 @@
+package com.andrewpmsmith.movabletype.model;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * A long lived handle for looking words up in the word table. One open
+ * connection and one compiled, parameterised query are kept for the life of
+ * the handle instead of opening the database for every word.
+ *
+ * Lookups are synchronized so a handle can be shared between threads. The
+ * handle also keeps simple latency counters so the cost of a lookup can be
+ * measured on real devices.
+ *
+ * An optional BloomFilter built from the same words can be placed in front
+ * of the table. Words the filter rejects are reported as missing without
+ * running the query.
+ */
+public class WordLookup {
+
+	// Held so that the connection stays open as long as the handle is alive
+	private final SQLiteDatabase mDatabase;
+	private final SQLiteStatement mQuery;
+	private BloomFilter mFilter;
+
+	private long mLookupCount;
+	private long mTotalNanos;
+	private long mMaxNanos;
+	private long mFilterRejections;
+	private long mFilterFalsePositives;
+
+	WordLookup(SQLiteDatabase db, String table, String column) {
+
+		mDatabase = db;
+
+		// EXISTS always returns exactly one row, so a miss doesn't have to be
+		// reported with an exception
+		mQuery = db.compileStatement("SELECT EXISTS(SELECT 1 FROM " + table
+				+ " WHERE " + column + " = ? LIMIT 1)");
+
+	}
+
+	/**
+	 * @return true if word is in the word table. Words must be upper case.
+	 */
+	public synchronized boolean contains(String word) {
+
+		if (!DawgBuilder.isValidWord(word))
+			return false;
+
+		long start = System.nanoTime();
+
+		boolean found;
+		if (mFilter != null && !mFilter.mightContain(word)) {
+			found = false;
+			++mFilterRejections;
+		} else {
+			mQuery.bindString(1, word);
+			found = mQuery.simpleQueryForLong() != 0;
+			mQuery.clearBindings();
+
+			if (mFilter != null && !found)
+				++mFilterFalsePositives;
+		}
+
+		long elapsed = System.nanoTime() - start;
+		++mLookupCount;
+		mTotalNanos += elapsed;
+		mMaxNanos = Math.max(mMaxNanos, elapsed);
+
+		return found;
+
+	}
+
+	/**
+	 * Place a filter in front of the table, or remove it if filter is null.
+	 * The filter must have been built from every word in the table.
+	 */
+	public synchronized void setFilter(BloomFilter filter) {
+		mFilter = filter;
+	}
+
+	public synchronized BloomFilter getFilter() {
+		return mFilter;
+	}
+
+	public synchronized long getLookupCount() {
+		return mLookupCount;
+	}
+
+	/**
+	 * @return the mean time taken by contains(..) in microseconds, or 0 if
+	 *         there have been no lookups.
+	 */
+	public synchronized double getMeanLatencyMicros() {
+		return (mLookupCount == 0) ? 0 : mTotalNanos / 1000.0 / mLookupCount;
+	}
+
+	/**
+	 * @return the longest time taken by contains(..) in microseconds.
+	 */
+	public synchronized double getMaxLatencyMicros() {
+		return mMaxNanos / 1000.0;
+	}
+
+	/**
+	 * @return the number of lookups answered by the filter alone.
+	 */
+	public synchronized long getFilterRejectionCount() {
+		return mFilterRejections;
+	}
+
+	/**
+	 * @return the number of lookups the filter passed to the table that
+	 *         turned out to be missing.
+	 */
+	public synchronized long getFilterFalsePositiveCount() {
+		return mFilterFalsePositives;
+	}
+
+	/**
+	 * @return the fraction of lookups that never reached the table.
+	 */
+	public synchronized double getFilterHitRatio() {
+		return (mLookupCount == 0) ? 0 : (double) mFilterRejections
+				/ mLookupCount;
+	}
+
+	public synchronized void resetStatistics() {
+		mLookupCount = 0;
+		mTotalNanos = 0;
+		mMaxNanos = 0;
+		mFilterRejections = 0;
+		mFilterFalsePositives = 0;
+	}
+
+}
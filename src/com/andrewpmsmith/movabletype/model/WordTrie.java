@@ -2,148 +2,990 @@ package com.andrewpmsmith.movabletype.model;
 
 import android.annotation.SuppressLint;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * Manages a Trie data structure used to store words and do fast lookups and 
+ * Manages a Trie data structure used to store words and do fast lookups and
  * prefix checking.
  *
+ * Nodes are stored in parallel primitive arrays rather than as objects. Each
+ * node records its letter, its first child and its next sibling, so a node
+ * costs 13 bytes and no lookups box or hash anything. The children of a node
+ * are kept in alphabetical order along the sibling chain. Node 0 is the root.
+ *
+ * Tries are saved in a compact binary format rather than as an object graph,
+ * both by serialize() and when embedded in another Serializable object. The
+ * words are written in alphabetical order and front coded: each word records
+ * how many letters it shares with the one before, followed by the rest of its
+ * letters and the index add(..) returned for it. Numbers are written as
+ * variable length integers, so a typical word takes only a few bytes. Reading
+ * and writing never recurse, however long the words.
+ *
+ * A large trie can be built from sorted words with a Builder, which merges
+ * equivalent suffixes as it goes so that, for example, every word ending in
+ * ING shares the same nodes. The result is frozen: add(..) throws, and once
+ * it has been safely published it can be read from any number of threads.
+ * A frozen trie is frozen again when it is read back.
+ *
  * @author Andrew Smith
  */
 public class WordTrie implements Serializable {
 
 	private static final long serialVersionUID = 1L;
-	private static final String UPPERCASE_A_TO_Z_REGEX = "^[A-Z]+$";
-	
+
 	public static final int INVALID_WORD_ERROR = -1;
+	public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+	private static final int FIRST_CHAR = 'A';
+	private static final int ALPHABET_SIZE = 26;
+	private static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final int MAGIC = 0x54524945; // "TRIE"
+	private static final int FORMAT_VERSION = 2;
+	// Version 1 had no flags byte
+	private static final int FORMAT_VERSION_UNFLAGGED = 1;
+	private static final int FLAG_FROZEN = 1;
+	// The first two bytes of a Java serialization stream
+	private static final int OBJECT_STREAM_MAGIC = 0xACED;
+
+	private transient byte[] mLetters;
+	private transient int[] mFirstChild;
+	private transient int[] mNextSibling;
+	// The index returned by add(..) for a word ending at the node, or NONE
+	private transient int[] mWordIndexes;
+	private transient int mNodeCount;
+	private transient int mWordCount;
+	private transient boolean mFrozen;
 
-	private final Node mRoot;
 	private int mWordIndex = 0;
 
+	// Only set while reading a trie saved in the original format
+	private Node mRoot;
+
 	@SuppressLint("UseSparseArrays")
-	// Use HashMap because SparseIntArray is not serializable
+	// The node type used before nodes were packed into arrays. It is kept so
+	// that tries saved inside old games can still be read.
 	private class Node implements Serializable {
 
 		private static final long serialVersionUID = 1L;
 
-		private static final int FIRST_CHAR = 'A';
-
 		public int mIndex = -1;
 		private HashMap<Integer, Node> mLetters;
 
-		private int convertIndex(char c) {
-			return c - FIRST_CHAR;
+	} // class Node
+
+	/**
+	 * A position in the trie that moves one letter at a time, so a word can
+	 * be checked as it is built up without creating strings or walking down
+	 * from the root again. Each step looks only at the children of the
+	 * current node, and nothing is allocated once the cursor's stack has
+	 * grown to the longest word used.
+	 *
+	 * Letters pushed after the cursor has left the trie are counted so that
+	 * pop() still undoes them one at a time. A cursor should be reset after
+	 * words are added to the trie.
+	 */
+	public final class Cursor {
+
+		private int[] mPath = new int[INITIAL_CAPACITY];
+		// mPath[mDepth - 1] is the current node, or the root when mDepth is 0
+		private int mDepth = 0;
+		// The number of letters pushed since the cursor left the trie
+		private int mOffTrie = 0;
+
+		private Cursor() {
 		}
 
-		public Node get(char c) {
+		/**
+		 * Move to the empty prefix.
+		 */
+		public void reset() {
+			mDepth = 0;
+			mOffTrie = 0;
+		}
 
-			if (mLetters == null)
-				return null;
+		/**
+		 * Extend the prefix by one letter.
+		 *
+		 * @return true if the new prefix is still in the trie.
+		 */
+		public boolean push(char c) {
+
+			if (mOffTrie == 0) {
+				int letter = c - FIRST_CHAR;
+				int child = (letter >= 0 && letter < ALPHABET_SIZE) ? findChild(
+						currentNode(), letter) : NONE;
+
+				if (child != NONE) {
+					if (mDepth == mPath.length) {
+						int[] path = new int[mDepth * 2];
+						System.arraycopy(mPath, 0, path, 0, mDepth);
+						mPath = path;
+					}
+					mPath[mDepth++] = child;
+					return true;
+				}
+			}
 
-			int index = convertIndex(c);
-			return (index >= 0) ? mLetters.get(index) : null;
+			++mOffTrie;
+			return false;
 		}
 
-		public int add(char c, Node n) {
+		/**
+		 * Remove the last letter pushed. Does nothing if the prefix is empty.
+		 */
+		public void pop() {
+			if (mOffTrie > 0)
+				--mOffTrie;
+			else if (mDepth > 0)
+				--mDepth;
+		}
 
-			if (mLetters == null)
-				mLetters = new HashMap<Integer, Node>();
+		/**
+		 * @return true if the letters pushed so far spell a word in the trie.
+		 */
+		public boolean isWord() {
+			return mOffTrie == 0 && mDepth > 0
+					&& mWordIndexes[currentNode()] != NONE;
+		}
+
+		/**
+		 * @return true if the letters pushed so far begin at least one word in
+		 *         the trie. As with containsPrefix(..), the empty prefix always
+		 *         does.
+		 */
+		public boolean isPrefix() {
+			return mOffTrie == 0;
+		}
+
+		/**
+		 * @return the number of letters pushed and not popped.
+		 */
+		public int getLength() {
+			return mDepth + mOffTrie;
+		}
+
+		private int currentNode() {
+			return (mDepth == 0) ? 0 : mPath[mDepth - 1];
+		}
+
+	} // class Cursor
+
+	/**
+	 * Walks the words of the trie in alphabetical order, one call to next()
+	 * at a time, optionally restricted to words starting with a prefix, words
+	 * that can be spelt from a set of letters, or a maximum number of words.
+	 *
+	 * The walk uses an explicit stack and spells each word into a single
+	 * reused buffer, so no strings are created unless getWord() is called.
+	 * An iterator can be restarted with new criteria to avoid allocating
+	 * another. The trie must not be changed while it is being walked.
+	 */
+	public final class WordIterator {
+
+		private char[] mBuffer = new char[INITIAL_CAPACITY];
+		// The nodes below the start node on the path to the current word
+		private int[] mStack = new int[INITIAL_CAPACITY];
+		private int mStackDepth;
+		private int mPrefixLength;
+		private int mLength;
+
+		private int mStart;
+		private int mNext;
+		private boolean mStarted;
+
+		private final int[] mAvailable = new int[ALPHABET_SIZE];
+		private boolean mConstrained;
+
+		private int mLimit;
+		private int mCount;
+
+		private WordIterator() {
+		}
+
+		/**
+		 * Start the walk again.
+		 *
+		 * @param prefix
+		 *            only visit words starting with this, which are also the
+		 *            first letters of the buffer. Null or "" for all words.
+		 * @param letterCounts
+		 *            the number of each letter available, indexed from 'A'.
+		 *            Only words, including their prefix, that can be spelt
+		 *            from these letters are visited. Null for no restriction.
+		 *            Copied, so the caller may reuse the array.
+		 * @param limit
+		 *            stop after this many words, or NO_LIMIT.
+		 */
+		public void restart(String prefix, int[] letterCounts, int limit) {
+
+			mStackDepth = 0;
+			mLength = 0;
+			mStarted = false;
+			mNext = NONE;
+			mLimit = limit;
+			mCount = 0;
+
+			mConstrained = (letterCounts != null);
+			if (mConstrained) {
+				System.arraycopy(letterCounts, 0, mAvailable, 0, ALPHABET_SIZE);
+			}
+
+			if (prefix == null)
+				prefix = "";
+			mPrefixLength = prefix.length();
+			ensureCapacity(mPrefixLength + 1);
+
+			int node = 0;
+			for (int i = 0; i < mPrefixLength && node != NONE; ++i) {
+
+				char c = prefix.charAt(i);
+				int letter = c - FIRST_CHAR;
+				if (letter < 0 || letter >= ALPHABET_SIZE
+						|| (mConstrained && mAvailable[letter]-- <= 0)) {
+					node = NONE;
+				} else {
+					node = findChild(node, letter);
+					mBuffer[i] = c;
+				}
 
-			int index = convertIndex(c);
-			if (index >= 0) {
-				mLetters.put(index, n);
-				return index;
-			} else {
-				return INVALID_WORD_ERROR;
 			}
+
+			mStart = node;
 		}
 
-	} // class Node
+		/**
+		 * Move to the next word.
+		 *
+		 * @return false when there are no more words, or the limit has been
+		 *         reached.
+		 */
+		public boolean next() {
+
+			if (mStart == NONE || mCount >= mLimit)
+				return false;
+
+			if (!mStarted) {
+				mStarted = true;
+				mNext = mFirstChild[mStart];
+
+				// The prefix is the first word if it is one
+				if (mStart != 0 && mWordIndexes[mStart] != NONE) {
+					mLength = mPrefixLength;
+					++mCount;
+					return true;
+				}
+			}
+
+			while (true) {
+
+				if (mNext != NONE) {
+
+					int node = mNext;
+					int letter = mLetters[node];
+
+					if (!mConstrained || mAvailable[letter] > 0) {
+
+						// Descend
+						if (mConstrained)
+							--mAvailable[letter];
+						ensureCapacity(mPrefixLength + mStackDepth + 1);
+						mBuffer[mPrefixLength + mStackDepth] = (char) (FIRST_CHAR + letter);
+						mStack[mStackDepth++] = node;
+						mNext = mFirstChild[node];
+
+						if (mWordIndexes[node] != NONE) {
+							mLength = mPrefixLength + mStackDepth;
+							++mCount;
+							return true;
+						}
+
+					} else {
+						mNext = mNextSibling[node];
+					}
+
+				} else {
+
+					if (mStackDepth == 0) {
+						mStart = NONE;
+						return false;
+					}
+
+					// Climb back up and move on to the next sibling
+					int node = mStack[--mStackDepth];
+					if (mConstrained)
+						++mAvailable[mLetters[node]];
+					mNext = mNextSibling[node];
+
+				}
+			}
+		}
+
+		/**
+		 * @return the buffer holding the current word in its first
+		 *         getLength() characters. It is overwritten by next().
+		 */
+		public char[] getLetters() {
+			return mBuffer;
+		}
+
+		public int getLength() {
+			return mLength;
+		}
+
+		/**
+		 * @return the current word as a new string.
+		 */
+		public String getWord() {
+			return new String(mBuffer, 0, mLength);
+		}
+
+		/**
+		 * @return the number of words visited since the last restart.
+		 */
+		public int getCount() {
+			return mCount;
+		}
+
+		private void ensureCapacity(int capacity) {
+
+			if (capacity > mBuffer.length) {
+				char[] buffer = new char[Math.max(capacity, mBuffer.length * 2)];
+				System.arraycopy(mBuffer, 0, buffer, 0, mBuffer.length);
+				mBuffer = buffer;
+			}
+
+			if (capacity > mStack.length) {
+				int[] stack = new int[Math.max(capacity, mStack.length * 2)];
+				System.arraycopy(mStack, 0, stack, 0, mStack.length);
+				mStack = stack;
+			}
+		}
+
+	} // class WordIterator
+
+	/**
+	 * Builds a frozen WordTrie from words added in ascending order, merging
+	 * equivalent suffixes on the fly. Words are checked without regular
+	 * expressions, and duplicates and words containing anything other than A
+	 * to Z are skipped.
+	 */
+	public static class Builder {
+
+		private final DawgBuilder mBuilder = new DawgBuilder();
+
+		/**
+		 * Add the next word in sorted order.
+		 *
+		 * @return true if the word was added, false if it was a duplicate or
+		 *         contained characters other than A to Z.
+		 * @throws IllegalArgumentException
+		 *             if the word is out of order.
+		 */
+		public boolean add(String word) {
+			return mBuilder.add(word);
+		}
+
+		/**
+		 * @return the frozen trie. The builder cannot be used afterwards.
+		 */
+		public WordTrie build() {
+			return new WordTrie(mBuilder.build());
+		}
+
+	} // class Builder
 
 	public WordTrie() {
-		mRoot = new Node();
+		clear();
 	}
 
+	/*
+	 * A frozen copy of a graph. Dawg edges are laid out exactly like the
+	 * trie's sibling chains and edge 0 is unused, so each edge becomes the
+	 * node with the same index and node 0 becomes the root.
+	 */
+	WordTrie(Dawg dawg) {
+
+		int count = dawg.getEdgeCount();
+
+		mLetters = new byte[count];
+		mFirstChild = new int[count];
+		mNextSibling = new int[count];
+		mWordIndexes = new int[count];
+		mNodeCount = count;
+
+		mFirstChild[0] = (dawg.getRoot() == 0) ? NONE : dawg.getRoot();
+		mNextSibling[0] = NONE;
+		mWordIndexes[0] = NONE;
+
+		for (int i = 1; i < count; ++i) {
+			int edge = dawg.getEdge(i);
+			int child = edge >>> Dawg.CHILD_SHIFT;
+			mLetters[i] = (byte) (edge & Dawg.LETTER_MASK);
+			mFirstChild[i] = (child == 0) ? NONE : child;
+			mNextSibling[i] = ((edge & Dawg.LAST_EDGE_FLAG) != 0) ? NONE
+					: i + 1;
+			// Shared nodes can't hold a different index for each word
+			mWordIndexes[i] = ((edge & Dawg.END_OF_WORD_FLAG) != 0) ? 0
+					: NONE;
+		}
+
+		mWordCount = dawg.getWordCount();
+		mWordIndex = mWordCount;
+		mFrozen = true;
+	}
+
+	/**
+	 * Restore a trie from the output of serialize(). Tries that were
+	 * serialized with Java serialization are also accepted.
+	 * 
+	 * @return the trie, or null if stream could not be read.
+	 */
 	public static WordTrie deserialize(byte[] stream) {
-		return (WordTrie) Serializer.deserialize(stream);
+
+		if (stream.length >= 2
+				&& ((stream[0] & 0xFF) << 8 | (stream[1] & 0xFF)) == OBJECT_STREAM_MAGIC)
+			return (WordTrie) Serializer.deserialize(stream);
+
+		try {
+			return read(new DataInputStream(new ByteArrayInputStream(stream)));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
 	}
 
 	public byte[] serialize() {
-		return Serializer.serialize(this);
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+		try {
+			DataOutputStream out = new DataOutputStream(bos);
+			write(out);
+			out.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Read a trie written by write(..).
+	 * 
+	 * @throws IOException
+	 *             if the input is not a trie in a known format.
+	 */
+	public static WordTrie read(DataInput in) throws IOException {
+		WordTrie trie = new WordTrie();
+		trie.readWords(in);
+		return trie;
 	}
 
-	public int add(String word) {
+	/**
+	 * Write the trie in the compact format understood by read(..).
+	 */
+	public void write(DataOutput out) throws IOException {
 
-		if (word == null) {
-			return INVALID_WORD_ERROR;
+		out.writeInt(MAGIC);
+		out.writeByte(FORMAT_VERSION);
+		out.writeByte(mFrozen ? FLAG_FROZEN : 0);
+		writeVarInt(out, mWordIndex);
+		writeVarInt(out, mWordCount);
+
+		// Depth first, visiting siblings in order, gives alphabetical order
+		byte[] letters = new byte[INITIAL_CAPACITY];
+		int[] path = new int[INITIAL_CAPACITY];
+		int depth = 0;
+		int node = mFirstChild[0];
+
+		// The number of letters shared with the last word written
+		int unchanged = 0;
+		int previousLength = 0;
+
+		while (true) {
+
+			if (node != NONE) {
+
+				if (depth == letters.length) {
+					byte[] longerLetters = new byte[depth * 2];
+					System.arraycopy(letters, 0, longerLetters, 0, depth);
+					letters = longerLetters;
+					int[] longerPath = new int[depth * 2];
+					System.arraycopy(path, 0, longerPath, 0, depth);
+					path = longerPath;
+				}
+
+				letters[depth] = mLetters[node];
+				unchanged = Math.min(unchanged, depth);
+
+				if (mWordIndexes[node] != NONE) {
+					int length = depth + 1;
+					int shared = Math.min(unchanged, previousLength);
+
+					writeVarInt(out, shared);
+					writeVarInt(out, length - shared);
+					out.write(letters, shared, length - shared);
+					writeVarInt(out, mWordIndexes[node]);
+
+					unchanged = length;
+					previousLength = length;
+				}
+
+				path[depth++] = node;
+				node = mFirstChild[node];
+
+			} else {
+
+				if (depth == 0)
+					break;
+
+				node = mNextSibling[path[--depth]];
+
+			}
 		}
-		
-		if (!word.matches(UPPERCASE_A_TO_Z_REGEX))
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             if the trie is frozen.
+	 */
+	public int add(CharSequence word) {
+
+		if (mFrozen)
+			throw new UnsupportedOperationException("WordTrie is frozen");
+
+		if (!isValidWord(word))
 			return INVALID_WORD_ERROR;
 
-		Node currentNode = mRoot;
+		int node = 0;
 
 		for (int i = 0; i < word.length(); ++i) {
+			node = findOrAddChild(node, (byte) (word.charAt(i) - FIRST_CHAR));
+		}
 
-			char c = word.charAt(i);
-			Node next = currentNode.get(c);
+		if (mWordIndexes[node] == NONE)
+			++mWordCount;
+		mWordIndexes[node] = mWordIndex++;
+
+		return mWordIndexes[node];
+	}
 
-			if (next == null) {
-				next = new Node();
-				currentNode.add(c, next);
+	/**
+	 * Remove a word, along with any nodes that no other word needs. Removing
+	 * the word added most recently puts the trie back exactly as it was
+	 * before, and the same nodes and index are handed out by the next
+	 * add(..), so the two can be paired at a high rate without allocating.
+	 * Nodes freed in any other order aren't reused until the trie is read
+	 * back.
+	 * 
+	 * @return true if the word was in the trie.
+	 * @throws UnsupportedOperationException
+	 *             if the trie is frozen.
+	 */
+	public boolean remove(CharSequence word) {
+
+		if (mFrozen)
+			throw new UnsupportedOperationException("WordTrie is frozen");
+
+		if (!isValidWord(word))
+			return false;
+
+		int node = findNode(word);
+		if (node == NONE || mWordIndexes[node] == NONE)
+			return false;
+
+		if (mWordIndexes[node] == mWordIndex - 1)
+			--mWordIndex;
+		mWordIndexes[node] = NONE;
+		--mWordCount;
+
+		// Unlink nodes from the end of the word until one is still needed
+		for (int length = word.length(); length > 0; --length) {
+
+			if (mFirstChild[node] != NONE || mWordIndexes[node] != NONE)
+				break;
+
+			int parent = findNode(word, length - 1);
+
+			int previous = NONE;
+			int child = mFirstChild[parent];
+			while (child != node) {
+				previous = child;
+				child = mNextSibling[child];
 			}
 
-			currentNode = next;
-		}
+			if (previous == NONE)
+				mFirstChild[parent] = mNextSibling[node];
+			else
+				mNextSibling[previous] = mNextSibling[node];
+
+			if (node == mNodeCount - 1)
+				--mNodeCount;
 
-		currentNode.mIndex = mWordIndex++;
+			node = parent;
+		}
 
-		return currentNode.mIndex;
+		return true;
 	}
 
-	public boolean contains(String word) {
+	public boolean contains(CharSequence word) {
 
 		if (word == null) {
 			return false;
 		}
 
-		Node currentNode = mRoot;
+		int node = findNode(word);
+		return node != NONE && mWordIndexes[node] != NONE;
 
-		for (int i = 0; i < word.length(); ++i) {
+	}
 
-			currentNode = currentNode.get(word.charAt(i));
+	public boolean containsPrefix(CharSequence prefix) {
 
-			if (currentNode == null) {
-				return false;
-			}
+		if (prefix == null) {
+			return false;
+		}
+
+		return findNode(prefix) != NONE;
+
+	}
+
+	/**
+	 * @return a new cursor positioned at the empty prefix.
+	 */
+	public Cursor newCursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * @return an iterator over every word in the trie.
+	 */
+	public WordIterator iterateWords() {
+		return iterateWords(null, null, NO_LIMIT);
+	}
+
+	/**
+	 * @return an iterator over the words matching the criteria described in
+	 *         WordIterator.restart(..).
+	 */
+	public WordIterator iterateWords(String prefix, int[] letterCounts,
+			int limit) {
+		WordIterator iterator = new WordIterator();
+		iterator.restart(prefix, letterCounts, limit);
+		return iterator;
+	}
+
+	/**
+	 * @return true if the trie was made by a Builder and can't be changed.
+	 */
+	public boolean isFrozen() {
+		return mFrozen;
+	}
+
+	/**
+	 * @return the number of distinct words in the trie.
+	 */
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+	/**
+	 * @return the number of nodes in the trie, including the root.
+	 */
+	public int getNodeCount() {
+		return mNodeCount;
+	}
+
+	/**
+	 * @return the number of bytes held by the node arrays, including unused
+	 *         capacity.
+	 */
+	public int getSizeInBytes() {
+		return mLetters.length + (mFirstChild.length + mNextSibling.length
+				+ mWordIndexes.length) * 4;
+	}
+
+	/*
+	 * Follow the letters of word from the root. Returns NONE if the path
+	 * leaves the trie.
+	 */
+	private int findNode(CharSequence word) {
+		return findNode(word, word.length());
+	}
+
+	private int findNode(CharSequence word, int length) {
+
+		int node = 0;
+
+		for (int i = 0; i < length; ++i) {
+
+			int letter = word.charAt(i) - FIRST_CHAR;
+			if (letter < 0 || letter >= ALPHABET_SIZE)
+				return NONE;
+
+			node = findChild(node, letter);
+			if (node == NONE)
+				return NONE;
 
 		}
 
-		return currentNode.mIndex != -1;
+		return node;
+	}
 
+	private int findChild(int node, int letter) {
+
+		int child = mFirstChild[node];
+		while (child != NONE && mLetters[child] < letter) {
+			child = mNextSibling[child];
+		}
+
+		return (child != NONE && mLetters[child] == letter) ? child : NONE;
 	}
 
-	public boolean containsPrefix(String prefix) {
+	private int findOrAddChild(int node, byte letter) {
 
-		if (prefix == null) {
-			return false;
+		int previous = NONE;
+		int child = mFirstChild[node];
+		while (child != NONE && mLetters[child] < letter) {
+			previous = child;
+			child = mNextSibling[child];
 		}
 
-		Node currentNode = mRoot;
+		if (child != NONE && mLetters[child] == letter)
+			return child;
+
+		// Insert a new node between previous and child
+		if (mNodeCount == mLetters.length)
+			allocate(mLetters.length * 2);
 
-		for (int i = 0; i < prefix.length(); ++i) {
+		int added = mNodeCount++;
+		mLetters[added] = letter;
+		mFirstChild[added] = NONE;
+		mNextSibling[added] = child;
+		mWordIndexes[added] = NONE;
 
-			currentNode = currentNode.get(prefix.charAt(i));
+		if (previous == NONE)
+			mFirstChild[node] = added;
+		else
+			mNextSibling[previous] = added;
 
-			if (currentNode == null) {
+		return added;
+	}
+
+	private void allocate(int capacity) {
+
+		byte[] letters = new byte[capacity];
+		int[] firstChild = new int[capacity];
+		int[] nextSibling = new int[capacity];
+		int[] wordIndexes = new int[capacity];
+
+		if (mLetters != null) {
+			System.arraycopy(mLetters, 0, letters, 0, mNodeCount);
+			System.arraycopy(mFirstChild, 0, firstChild, 0, mNodeCount);
+			System.arraycopy(mNextSibling, 0, nextSibling, 0, mNodeCount);
+			System.arraycopy(mWordIndexes, 0, wordIndexes, 0, mNodeCount);
+		}
+
+		mLetters = letters;
+		mFirstChild = firstChild;
+		mNextSibling = nextSibling;
+		mWordIndexes = wordIndexes;
+	}
+
+	private static boolean isValidWord(CharSequence word) {
+
+		if (word == null || word.length() == 0)
+			return false;
+
+		for (int i = 0; i < word.length(); ++i) {
+			char c = word.charAt(i);
+			if (c < 'A' || c > 'Z')
 				return false;
+		}
+
+		return true;
+	}
+
+	private void clear() {
+		mLetters = null;
+		mNodeCount = 0;
+		allocate(INITIAL_CAPACITY);
+		mNodeCount = 1;
+		mWordCount = 0;
+		mFrozen = false;
+		mWordIndexes[0] = NONE;
+		mFirstChild[0] = NONE;
+		mNextSibling[0] = NONE;
+	}
+
+	private void readWords(DataInput in) throws IOException {
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a WordTrie");
+
+		int version = in.readUnsignedByte();
+		int flags;
+		if (version == FORMAT_VERSION)
+			flags = in.readUnsignedByte();
+		else if (version == FORMAT_VERSION_UNFLAGGED)
+			flags = 0;
+		else
+			throw new IOException("Unsupported WordTrie version");
+
+		int nextWordIndex = readVarInt(in);
+		int wordCount = readVarInt(in);
+
+		clear();
+
+		// path[i] is the node reached by the first i + 1 letters of the last
+		// word read
+		int[] path = new int[INITIAL_CAPACITY];
+		int previousLength = 0;
+
+		for (int w = 0; w < wordCount; ++w) {
+
+			int shared = readVarInt(in);
+			int length = shared + readVarInt(in);
+			if (shared > previousLength || length <= shared)
+				throw new IOException("WordTrie is corrupt");
+
+			if (length > path.length) {
+				int[] longerPath = new int[Math.max(length, path.length * 2)];
+				System.arraycopy(path, 0, longerPath, 0, previousLength);
+				path = longerPath;
 			}
 
+			int node = (shared == 0) ? 0 : path[shared - 1];
+			for (int i = shared; i < length; ++i) {
+				int letter = in.readUnsignedByte();
+				if (letter >= ALPHABET_SIZE)
+					throw new IOException("WordTrie is corrupt");
+				node = findOrAddChild(node, (byte) letter);
+				path[i] = node;
+			}
+
+			if (mWordIndexes[node] == NONE)
+				++mWordCount;
+			mWordIndexes[node] = readVarInt(in);
+
+			previousLength = length;
 		}
 
-		return true;
+		mWordIndex = nextWordIndex;
+
+		if ((flags & FLAG_FROZEN) != 0)
+			freeze();
+	}
 
+	/*
+	 * Replace the contents with a frozen, suffix shared copy.
+	 */
+	private void freeze() {
+
+		Builder builder = new Builder();
+		WordIterator words = iterateWords();
+		while (words.next()) {
+			builder.add(words.getWord());
+		}
+		WordTrie frozen = builder.build();
+
+		mLetters = frozen.mLetters;
+		mFirstChild = frozen.mFirstChild;
+		mNextSibling = frozen.mNextSibling;
+		mWordIndexes = frozen.mWordIndexes;
+		mNodeCount = frozen.mNodeCount;
+		mWordCount = frozen.mWordCount;
+		mWordIndex = frozen.mWordIndex;
+		mFrozen = true;
+	}
+
+	/*
+	 * Write a non-negative int seven bits at a time, low bits first, setting
+	 * the top bit of each byte if more follow.
+	 */
+	private static void writeVarInt(DataOutput out, int value)
+			throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0)
+					break;
+				return value;
+			}
+		}
+
+		throw new IOException("WordTrie is corrupt");
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		write(out);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+
+		in.defaultReadObject();
+
+		if (mRoot != null) {
+			// Saved in the original format, so rebuild the arrays from the
+			// nodes
+			Node legacyRoot = mRoot;
+			mRoot = null;
+			clear();
+			if (legacyRoot.mIndex != NONE) {
+				mWordIndexes[0] = legacyRoot.mIndex;
+				++mWordCount;
+			}
+			copyLegacyChildren(legacyRoot, 0);
+		} else {
+			readWords(in);
+		}
+	}
+
+	private void copyLegacyChildren(Node legacyNode, int node) {
+
+		if (legacyNode.mLetters == null)
+			return;
+
+		// Sorted, so the new sibling chains come out in alphabetical order
+		Map<Integer, Node> children = new TreeMap<Integer, Node>(
+				legacyNode.mLetters);
+
+		for (Map.Entry<Integer, Node> entry : children.entrySet()) {
+			int child = findOrAddChild(node, (byte) (int) entry.getKey());
+			int index = entry.getValue().mIndex;
+			if (index != NONE) {
+				mWordIndexes[child] = index;
+				++mWordCount;
+			}
+			copyLegacyChildren(entry.getValue(), child);
+		}
 	}
 
 }
@@ -0,0 +1,141 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+
+/**
+ * Zobrist hashing of game positions, for recognising a position reached by
+ * different orders of moves.
+ *
+ * A position's hash is the exclusive or of a random key for each bit set in
+ * the ownership masks, one for the game state and one if the last turn was a
+ * pass, together with a hash of each played word. A key for the letter on
+ * each tile is included too, so that positions of different games hash
+ * differently, though it never changes during a game. Playing a move changes the
+ * hash by the keys of whatever it changed, so GameModel keeps its hash up to
+ * date as turns are played rather than hashing each position from scratch.
+ *
+ * Played words are hashed from their letters rather than given random keys,
+ * as the words that can be played aren't known in advance. The word hash
+ * depends on the order of the letters, so anagrams hash differently.
+ */
+public final class Zobrist {
+
+	private static final long SEED = 0x4D6F7661626C6554L;
+	private static final int ALPHABET_SIZE = 26;
+
+	private static final long[] PLAYER1_KEYS = new long[GameModel.GRID_ITEMS];
+	private static final long[] PLAYER2_KEYS = new long[GameModel.GRID_ITEMS];
+	private static final long[] SURROUNDED_KEYS = new long[GameModel.GRID_ITEMS];
+	private static final long[] STATE_KEYS = new long[GameState.values().length];
+	private static final long[] LETTER_KEYS = new long[GameModel.GRID_ITEMS
+			* ALPHABET_SIZE];
+	private static final long PASSED_KEY;
+
+	static {
+		Random random = new Random(SEED);
+		for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+			PLAYER1_KEYS[i] = random.nextLong();
+			PLAYER2_KEYS[i] = random.nextLong();
+			SURROUNDED_KEYS[i] = random.nextLong();
+		}
+		for (int i = 0; i < STATE_KEYS.length; ++i) {
+			STATE_KEYS[i] = random.nextLong();
+		}
+		PASSED_KEY = random.nextLong();
+		for (int i = 0; i < LETTER_KEYS.length; ++i) {
+			LETTER_KEYS[i] = random.nextLong();
+		}
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * @return the hash of a position, computed from scratch.
+	 */
+	public static long hash(GameModel game) {
+
+		long hash = tiles(game.getOwnedTiles(GameModel.PLAYER1),
+				game.getOwnedTiles(GameModel.PLAYER2),
+				game.getSurroundedTiles())
+				^ state(game.getGameState(), game.hasPassed());
+
+		for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+			hash ^= LETTER_KEYS[i * ALPHABET_SIZE + game.getLetter(i) - 'A'];
+		}
+
+		WordTrie.WordIterator words = game.getPlayedWords().iterateWords();
+		while (words.next()) {
+			hash ^= word(words.getLetters(), words.getLength());
+		}
+
+		return hash;
+	}
+
+	/**
+	 * @return the keys of the bits set in each mask. Passing the exclusive or
+	 *         of the masks before and after a move gives the change in hash.
+	 */
+	public static long tiles(int player1Tiles, int player2Tiles,
+			int surroundedTiles) {
+
+		long hash = 0;
+
+		while (player1Tiles != 0) {
+			int tile = Integer.numberOfTrailingZeros(player1Tiles);
+			player1Tiles &= player1Tiles - 1;
+			hash ^= PLAYER1_KEYS[tile];
+		}
+		while (player2Tiles != 0) {
+			int tile = Integer.numberOfTrailingZeros(player2Tiles);
+			player2Tiles &= player2Tiles - 1;
+			hash ^= PLAYER2_KEYS[tile];
+		}
+		while (surroundedTiles != 0) {
+			int tile = Integer.numberOfTrailingZeros(surroundedTiles);
+			surroundedTiles &= surroundedTiles - 1;
+			hash ^= SURROUNDED_KEYS[tile];
+		}
+
+		return hash;
+	}
+
+	public static long state(GameState state, boolean hasPassed) {
+		return STATE_KEYS[state.ordinal()] ^ (hasPassed ? PASSED_KEY : 0);
+	}
+
+	/**
+	 * @return the hash of the first length letters, which is never zero.
+	 */
+	public static long word(char[] letters, int length) {
+
+		long hash = SEED;
+		for (int i = 0; i < length; ++i) {
+			hash = mix(hash, letters[i]);
+		}
+
+		return (hash == 0) ? 1 : hash;
+	}
+
+	/**
+	 * @return the hash of word, the same as word(char[], int) gives for its
+	 *         letters.
+	 */
+	public static long word(CharSequence word) {
+
+		long hash = SEED;
+		for (int i = 0; i < word.length(); ++i) {
+			hash = mix(hash, word.charAt(i));
+		}
+
+		return (hash == 0) ? 1 : hash;
+	}
+
+	private static long mix(long hash, char letter) {
+		hash = (hash ^ letter) * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 29);
+	}
+
+}
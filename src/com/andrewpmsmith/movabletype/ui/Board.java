@@ -1,9 +1,11 @@
 package com.andrewpmsmith.movabletype.ui;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
+import java.util.concurrent.Executor;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -12,8 +14,11 @@ import android.content.DialogInterface;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 
 import com.andrewpmsmith.movabletype.R;
+import com.andrewpmsmith.movabletype.ai.ComputerPlayer;
+import com.andrewpmsmith.movabletype.ai.HintFinder;
 import com.andrewpmsmith.movabletype.gameframework.ExpandContractAnimation;
 import com.andrewpmsmith.movabletype.gameframework.RenderSurface;
 import com.andrewpmsmith.movabletype.gameframework.RotationAnimation;
@@ -23,16 +28,25 @@ import com.andrewpmsmith.movabletype.gameframework.Widget;
 import com.andrewpmsmith.movabletype.gameframework.WidgetClickListener;
 import com.andrewpmsmith.movabletype.gameframework.WidgetDragListener;
 import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.WordTrie;
 
 /**
  * Controls the rendering of the board, including the letter grid, the word, the
- * scores, and the "clear" and "submit" buttons.
+ * scores, and the "clear", "hint" and "submit" buttons.
  * 
  * The state of the game is managed by a GameModel object passed into the
  * Board's constructor. The Board will render the game contained in the
  * GameModel. It will manage the user interaction, passing turn details to the
  * GameModel.
  * 
+ * In a game against the computer, player 2's turns are chosen by a
+ * ComputerPlayer in the background, and the board ignores touches until the
+ * computer's word has been played.
+ * 
+ * A HintFinder starts looking for a word as each player's turn begins, and
+ * the "hint" button spells out the best word it has found so far.
+ * 
  * @author Andrew Smith
  */
 public class Board extends RenderSurface implements WidgetClickListener,
@@ -47,6 +61,8 @@ public class Board extends RenderSurface implements WidgetClickListener,
 	private static final int COLOR_INVISIBLE = 0x00000000;
 	private static final int PLACEHOLDER_UNUSED = -1;
 	private final static double MIN_HEIGHT_TO_WIDTH = 1.4;
+	// How long the computer's word is shown before it is submitted
+	private static final int COMPUTER_WORD_DELAY = ANIMATION_DURATION * 2;
 
 	private GameModel mGameModel;
 
@@ -56,6 +72,39 @@ public class Board extends RenderSurface implements WidgetClickListener,
 	private Tile mPlaceHolderTile;
 	private int mPlaceHolderIndex = PLACEHOLDER_UNUSED;
 
+	// Follows the word as it is built so that the play button can show
+	// whether it is a word without a dictionary lookup
+	private WordTrie.Cursor mWordCursor;
+	// The tiles whose letters have been pushed on mWordCursor, in order
+	private final List<Tile> mCursorTiles = new ArrayList<Tile>();
+
+	// Set while a submitted word is being checked in the background
+	private boolean mTurnPending = false;
+
+	// Runs turn results on the UI thread
+	private final Executor mUiExecutor = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			post(command);
+		}
+
+	};
+
+	// Plays player 2 in a game against the computer, otherwise null
+	private ComputerPlayer mComputerPlayer;
+
+	private HintFinder mHintFinder;
+
+	private final Runnable mSubmitComputerWord = new Runnable() {
+
+		@Override
+		public void run() {
+			submitWord();
+		}
+
+	};
+
 	private int mTileWidthInWord;
 
 	private int mGridTop;
@@ -82,6 +131,7 @@ public class Board extends RenderSurface implements WidgetClickListener,
 	int mDropShadowColor;
 
 	TextWidget mClearButton;
+	TextWidget mHintButton;
 	TextWidget mPlayButton;
 	TextWidget mPlayer1Score;
 	TextWidget mPlayer2Score;
@@ -116,6 +166,7 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		mDropShadowColor = res.getColor(R.color.tile_dropshadow);
 
 		final String clearButtonText = res.getString(R.string.clear_button);
+		final String hintButtonText = res.getString(R.string.hint_button);
 		final String submitButtonText = res.getString(R.string.submit_button);
 
 		setBackgroundColor(mBackgroundColor);
@@ -150,6 +201,18 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		});
 		addWidget(mClearButton);
 
+		mHintButton = new TextWidget(COLOR_INVISIBLE, hintButtonText,
+				Color.BLACK);
+		mHintButton.setClickListener(new WidgetClickListener() {
+
+			@Override
+			public void onClick(Widget w) {
+				showHint();
+			}
+
+		});
+		addWidget(mHintButton);
+
 		mPlayButton = new TextWidget(COLOR_INVISIBLE, submitButtonText,
 				Color.BLACK);
 		mPlayButton.setClickListener(new WidgetClickListener() {
@@ -160,9 +223,11 @@ public class Board extends RenderSurface implements WidgetClickListener,
 			}
 
 		});
-		mPlayButton.setColor(mPlayer1Color);
 		addWidget(mPlayButton);
 
+		mWordCursor = mGameModel.getBoardWords().newCursor();
+		updatePlayButton();
+
 		String player1Score = String.valueOf(mGameModel
 				.getPoints(GameModel.PLAYER1));
 		String player2Score = String.valueOf(mGameModel
@@ -175,6 +240,38 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		addWidget(mPlayer1Score);
 		addWidget(mPlayer2Score);
 
+		mHintFinder = new HintFinder(getContext());
+
+		if (mGameModel.hasComputerOpponent())
+			mComputerPlayer = new ComputerPlayer(getContext());
+
+		if (isComputerTurn()) {
+			playComputerTurn();
+		} else if (mGameModel.getGameState() != GameModel.GameState.GAME_OVER) {
+			mHintFinder.start(mGameModel);
+		}
+
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		mHintFinder.cancel();
+		if (mComputerPlayer != null) {
+			mComputerPlayer.cancel();
+			removeCallbacks(mSubmitComputerWord);
+		}
+	}
+
+	@Override
+	public boolean onTouchEvent(MotionEvent m) {
+
+		// The tiles belong to the computer while it plays its turn, and the
+		// word can't change while a submitted one is being checked
+		if (isComputerTurn() || mTurnPending)
+			return true;
+
+		return super.onTouchEvent(m);
 	}
 
 	@Override
@@ -232,6 +329,8 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		mPlaceHolderTile.applyLayout(0, mWordTop, Tile.widthInWord, tileHeight);
 
 		mClearButton.applyLayout(0, 0, mTileWidthInWord, mTileWidthInWord);
+		mHintButton.applyLayout(mTileWidthInWord, 0, mTileWidthInWord,
+				mTileWidthInWord);
 		mPlayButton.applyLayout(getWidth() - mTileWidthInWord, 0,
 				mTileWidthInWord, mTileWidthInWord);
 		mPlayer1Score.applyLayout(getWidth() / 2 - mTileWidthInWord, 0,
@@ -410,6 +509,8 @@ public class Board extends RenderSurface implements WidgetClickListener,
 			animateToPosition(t, t.mPositionInGrid_x, t.mPositionInGrid_y,
 					Tile.widthInGrid);
 		}
+		mWordCursor.reset();
+		mCursorTiles.clear();
 
 	}
 
@@ -429,6 +530,7 @@ public class Board extends RenderSurface implements WidgetClickListener,
 				* mWord.size());
 
 		List<Integer> letters = new LinkedList<Integer>();
+		List<Tile> tiles = new ArrayList<Tile>(mWord.size());
 		for (int i = 0; i < mWord.size(); ++i) {
 
 			Tile t = mWord.get(i);
@@ -439,13 +541,63 @@ public class Board extends RenderSurface implements WidgetClickListener,
 
 			if (t.getIndex() >= 0) {
 				letters.add(t.getIndex());
+				tiles.add(t);
 			}
 		}
 
 		mGameModel.setWord(letters);
+		moveWordCursor(tiles);
 
 		updateScore();
+		updatePlayButton();
+
+	}
+
+	/*
+	 * Bring mWordCursor up to date with the tiles of the word. A tile added
+	 * at the end is one push, and the last tile removed one pop. A tile
+	 * dropped into or taken from the middle of the word changes the letters
+	 * after it, so the cursor is popped back to it and the rest pushed again.
+	 */
+	private void moveWordCursor(List<Tile> tiles) {
+
+		int same = 0;
+		while (same < mCursorTiles.size() && same < tiles.size()
+				&& mCursorTiles.get(same) == tiles.get(same)) {
+			++same;
+		}
+
+		while (mCursorTiles.size() > same) {
+			mCursorTiles.remove(mCursorTiles.size() - 1);
+			mWordCursor.pop();
+		}
 
+		for (int i = same; i < tiles.size(); ++i) {
+			Tile t = tiles.get(i);
+			mCursorTiles.add(t);
+			mWordCursor.push(mGameModel.getLetter(t.getIndex()));
+		}
+	}
+
+	/*
+	 * Colour the play button for the player whose turn it is, using the
+	 * stronger shade when the word could be played.
+	 */
+	private void updatePlayButton() {
+
+		// A played word is a prefix of itself, so this covers both rules
+		boolean playable = mWordCursor.getLength() >= 2
+				&& mWordCursor.isWord()
+				&& !mGameModel.getPlayedWords().containsPrefix(
+						mGameModel.getWord());
+
+		if (mGameModel.getGameState() == GameModel.GameState.PLAYER2_TURN) {
+			mPlayButton.setColor(playable ? mPlayer2SurroundedColor
+					: mPlayer2Color);
+		} else {
+			mPlayButton.setColor(playable ? mPlayer1SurroundedColor
+					: mPlayer1Color);
+		}
 	}
 
 	private void updateScore() {
@@ -462,18 +614,97 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		}
 	}
 
+	private boolean isComputerTurn() {
+		return mComputerPlayer != null
+				&& mGameModel.getGameState() == GameModel.GameState.PLAYER2_TURN;
+	}
+
+	/*
+	 * Ask the computer for its move, then spell it out on the board and
+	 * submit it as if it had been tapped in.
+	 */
+	private void playComputerTurn() {
+
+		mComputerPlayer.play(mGameModel, new ComputerPlayer.MoveCallback() {
+
+			@Override
+			public void onMoveChosen(Move move) {
+
+				if (move.isPass()) {
+					passComputerTurn();
+					return;
+				}
+
+				returnAllTilesToGrid();
+				for (int i = 0; i < move.getLength(); ++i) {
+					mWord.add(mTiles[move.getTile(i)]);
+				}
+				presentWord();
+
+				postDelayed(mSubmitComputerWord, COMPUTER_WORD_DELAY);
+			}
+
+		}, mUiExecutor);
+	}
+
+	/*
+	 * Spell out the best word found for the player so far, if there is one.
+	 */
+	private void showHint() {
+
+		Move hint = mHintFinder.getHint();
+		if (hint == null)
+			return;
+
+		returnAllTilesToGrid();
+		for (int i = 0; i < hint.getLength(); ++i) {
+			mWord.add(mTiles[hint.getTile(i)]);
+		}
+		presentWord();
+	}
+
+	private void passComputerTurn() {
+		mGameModel.passTurn();
+		mLastPlayedWord = null;
+		endTurn();
+	}
+
 	private void submitWord() {
 
-		GameModel.TurnResult turnResult = mGameModel.playTurn();
+		// Ignore repeated taps while the last word is still being checked
+		if (mTurnPending)
+			return;
+		mTurnPending = true;
+
+		final List<Tile> submittedTiles = new LinkedList<Tile>(mWord);
+		final String word = mGameModel.getWord();
+
+		mGameModel.playTurn(new GameModel.TurnCallback() {
+
+			@Override
+			public void onTurnPlayed(GameModel.TurnResult turnResult) {
+				mTurnPending = false;
+				showTurnResult(turnResult, submittedTiles, word);
+			}
+
+		}, mUiExecutor);
 
+	}
+
+	private void showTurnResult(GameModel.TurnResult turnResult,
+			List<Tile> submittedTiles, String word) {
 
 		if (turnResult == GameModel.TurnResult.SUCCESS) {
 			updateScore();
 
-			mLastPlayedWord = new LinkedList<Tile>(mWord);
+			mLastPlayedWord = submittedTiles;
 
 			endTurn();
 
+		} else if (isComputerTurn()) {
+			// Not expected, as the computer only plays words from the board
+			passComputerTurn();
+
 		} else {
 			AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
 
@@ -481,7 +712,6 @@ public class Board extends RenderSurface implements WidgetClickListener,
 			final String dismiss = res.getString(R.string.dismiss_message);
 			final String pass = res.getString(R.string.pass_message);
 
-			String word = mGameModel.getWord();
 			String message;
 
 			switch (turnResult) {
@@ -531,7 +761,29 @@ public class Board extends RenderSurface implements WidgetClickListener,
 
 		GameModel.GameState state = mGameModel.getGameState();
 
-		if (state != GameModel.GameState.GAME_OVER) {
+		// Look for a hint while the next player thinks
+		if (state != GameModel.GameState.GAME_OVER && !isComputerTurn()) {
+			mHintFinder.start(mGameModel);
+		} else {
+			mHintFinder.cancel();
+		}
+
+		if (state != GameModel.GameState.GAME_OVER && mComputerPlayer != null) {
+
+			updatePlayButton();
+
+			if (state == GameModel.GameState.PLAYER2_TURN) {
+				playComputerTurn();
+			} else if (mLastPlayedWord != null) {
+				shakeTiles(mLastPlayedWord);
+			} else {
+				AlertDialog.Builder builder = new AlertDialog.Builder(
+						getContext());
+				builder.setMessage(res.getString(R.string.computer_passed))
+						.setPositiveButton(dismiss, null).show();
+			}
+
+		} else if (state != GameModel.GameState.GAME_OVER) {
 
 			String message = res.getString(R.string.turn_played);
 			message = String
@@ -539,9 +791,7 @@ public class Board extends RenderSurface implements WidgetClickListener,
 							(state == GameModel.GameState.PLAYER1_TURN) ? "1"
 									: "2");
 
-			int playerColor = state == GameModel.GameState.PLAYER1_TURN ? mPlayer1Color
-					: mPlayer2Color;
-			mPlayButton.setColor(playerColor);
+			updatePlayButton();
 
 			AlertDialog.Builder builder = new AlertDialog.Builder(
 					getContext());
@@ -566,6 +816,11 @@ public class Board extends RenderSurface implements WidgetClickListener,
 			String message;
 			if (result == GameModel.GameResult.DRAW) {
 				message = res.getString(R.string.game_over_draw);
+			} else if (mComputerPlayer != null) {
+				message = res.getString(
+						(result == GameModel.GameResult.PLAYER1_WIN)
+								? R.string.game_over_human
+								: R.string.game_over_computer);
 			} else {
 				message = res.getString(R.string.game_over);
 				message = String.format(message,
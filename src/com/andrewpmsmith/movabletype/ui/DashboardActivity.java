@@ -12,7 +12,6 @@ import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
@@ -42,9 +41,10 @@ import com.andrewpmsmith.movabletype.model.WordList;
 public class DashboardActivity extends Activity implements OnItemClickListener,
 		OnItemLongClickListener {
 	
-	private static final int FIXED_OPTIONS = 2;
+	private static final int FIXED_OPTIONS = 3;
 	private static final int NEW_GAME = 0;
-	private static final int HOW_TO_PLAY = 1;
+	private static final int NEW_COMPUTER_GAME = 1;
+	private static final int HOW_TO_PLAY = 2;
 	
 	private List<Long> mSavedGames;
 	private ListView mListView;
@@ -75,10 +75,9 @@ public class DashboardActivity extends Activity implements OnItemClickListener,
 		@Override
 		protected Boolean doInBackground(Void... params) {
 
-			// Ensure the database has been initialised
-			WordList db = new WordList(mContext);
-			SQLiteDatabase temp = db.getReadableDatabase();
-			temp.close();
+			// Ensure the dictionary and the index used to set up new boards
+			// have been loaded
+			WordList.getSignatureIndex(mContext);
 
 			return true;
 		}
@@ -120,7 +119,7 @@ public class DashboardActivity extends Activity implements OnItemClickListener,
 			if (position<FIXED_OPTIONS) {
 				ImageView icon = (ImageView) view.findViewById(R.id.list_image);
 				Bitmap bm;
-				if (position==NEW_GAME) {
+				if (position==NEW_GAME || position==NEW_COMPUTER_GAME) {
 					bm = BitmapFactory.decodeResource(getResources(), R.drawable.plus_icon);
 				} else {
 					bm = BitmapFactory.decodeResource(getResources(), R.drawable.help_icon);
@@ -160,6 +159,7 @@ public class DashboardActivity extends Activity implements OnItemClickListener,
 		mOptions = new LinkedList<String>();
 		
 		mOptions.add(getString(R.string.new_game));
+		mOptions.add(getString(R.string.new_computer_game));
 		mOptions.add(getString(R.string.how_to_play));
 
 		String savedGame = getResources().getString(R.string.saved_game);
@@ -182,6 +182,13 @@ public class DashboardActivity extends Activity implements OnItemClickListener,
 					GameActivity.class);
 
 			startActivity(newGameintent);
+		} else if (pos == NEW_COMPUTER_GAME) {
+			Intent computerGameIntent = new Intent(DashboardActivity.this,
+					GameActivity.class);
+
+			computerGameIntent.putExtra(GameActivity.EXTRA_COMPUTER_OPPONENT,
+					true);
+			startActivity(computerGameIntent);
 		} else if (pos == HOW_TO_PLAY) {
 			Intent instructionsIntent = new Intent(DashboardActivity.this,
 					InstructionsActivity.class);
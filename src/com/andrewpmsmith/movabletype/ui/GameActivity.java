@@ -17,6 +17,7 @@ import com.andrewpmsmith.movabletype.model.GameModel;
 public class GameActivity extends Activity {
 
 	public final static String EXTRA_GAME_ID = "gameId";
+	public final static String EXTRA_COMPUTER_OPPONENT = "computerOpponent";
 
 	Board mBoard;
 	GameModel mGameModel;
@@ -35,7 +36,8 @@ public class GameActivity extends Activity {
 			GameDataBase gdb = new GameDataBase(this);
 			mGameModel = gdb.getGame(mSavedGameId);
 		} else {
-			mGameModel = new GameModel(this);
+			mGameModel = new GameModel(this, intent.getBooleanExtra(
+					EXTRA_COMPUTER_OPPONENT, false));
 		}
 
 		mBoard = new Board(this, mGameModel);
@@ -0,0 +1,71 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.andrewpmsmith.movabletype.model.AnagramIndex;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class AnagramIndexTest extends TestCase {
+	
+	private AnagramIndex buildIndex() {
+		return new AnagramIndex(Arrays.asList("TALES", "LEAST", "STEAL", "ACT",
+				"CAT", "SLATE", "STALE", "TEALS", "AT", "TA", "CAT", "cat",
+				"STALEST"));
+	}
+	
+	/*
+	 * Test that words are grouped by their letters
+	 */
+	public void test_functional() {
+		
+		AnagramIndex index = buildIndex();
+		
+		// The duplicate and the lower case word are skipped
+		Assert.assertEquals(11, index.getWordCount());
+		Assert.assertEquals(4, index.getKeyCount());
+		
+		Assert.assertEquals(Arrays.asList("LEAST", "SLATE", "STALE", "STEAL",
+				"TALES", "TEALS"), index.getAnagrams("STEAL"));
+		Assert.assertEquals(Arrays.asList("ACT", "CAT"),
+				index.getAnagrams("TCA"));
+		Assert.assertEquals(Arrays.asList("AT", "TA"), index.getAnagrams("AT"));
+		Assert.assertEquals(Arrays.asList("STALEST"),
+				index.getAnagrams("SSTTALE"));
+		
+		Assert.assertEquals(Collections.emptyList(), index.getAnagrams("A"));
+		Assert.assertEquals(Collections.emptyList(), index.getAnagrams("DOG"));
+		Assert.assertEquals(Collections.emptyList(), index.getAnagrams(""));
+		Assert.assertEquals(Collections.emptyList(), index.getAnagrams(
+				(String) null));
+		
+	}
+	
+	/*
+	 * Test lookups by letter counts and by key
+	 */
+	public void test_keys() {
+		
+		AnagramIndex index = buildIndex();
+		
+		int[] letterCounts = new int[26];
+		letterCounts['A' - 'A'] = 1;
+		letterCounts['C' - 'A'] = 1;
+		letterCounts['T' - 'A'] = 1;
+		Assert.assertEquals(Arrays.asList("ACT", "CAT"),
+				index.getAnagrams(letterCounts));
+		
+		char[] key = "AELSTXYZ".toCharArray();
+		int k = index.findKey(key, 5);
+		Assert.assertTrue(k >= 0);
+		Assert.assertEquals("AELST", index.getKey(k));
+		Assert.assertEquals(6, index.getGroupSize(k));
+		
+		Assert.assertEquals(-1, index.findKey(key, 6));
+		Assert.assertEquals(Collections.emptyList(), index.getWords(-1));
+		
+	}
+	
+}
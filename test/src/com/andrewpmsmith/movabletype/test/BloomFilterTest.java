@@ -0,0 +1,88 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.andrewpmsmith.movabletype.model.BloomFilter;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class BloomFilterTest extends TestCase {
+	
+	private static final int WORDS = 10000;
+	private static final double FALSE_POSITIVE_RATE = 0.01;
+	
+	/*
+	 * Returns a unique string of CAPITALS
+	 */
+	private String word(int n) {
+		StringBuilder sb = new StringBuilder();
+		do {
+			sb.append((char) ('A' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		return sb.toString();
+	}
+	
+	private BloomFilter buildFilter() {
+		BloomFilter filter = BloomFilter.create(WORDS, FALSE_POSITIVE_RATE);
+		for (int i = 0; i < WORDS; ++i) {
+			filter.add(word(i));
+		}
+		return filter;
+	}
+	
+	/*
+	 * Added words must always be found, and the false positive rate must be
+	 * close to the one requested.
+	 */
+	public void test_falsePositiveRate() {
+		
+		BloomFilter filter = buildFilter();
+		
+		for (int i = 0; i < WORDS; ++i) {
+			Assert.assertTrue(filter.mightContain(word(i)));
+		}
+		
+		int falsePositives = 0;
+		for (int i = WORDS; i < WORDS * 11; ++i) {
+			if (filter.mightContain(word(i)))
+				++falsePositives;
+		}
+		double rate = (double) falsePositives / (WORDS * 10);
+		
+		Assert.assertTrue("false positive rate " + rate,
+				rate < FALSE_POSITIVE_RATE * 2);
+		Assert.assertEquals(FALSE_POSITIVE_RATE,
+				filter.getExpectedFalsePositiveRate(), FALSE_POSITIVE_RATE / 2);
+		Assert.assertEquals(WORDS, filter.getWordCount());
+		
+		Assert.assertFalse(filter.mightContain(null));
+		
+	}
+	
+	public void test_serialization() throws IOException {
+		
+		BloomFilter filter = buildFilter();
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		filter.write(new DataOutputStream(bytes));
+		
+		BloomFilter copy = BloomFilter.read(new DataInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())));
+		
+		Assert.assertEquals(filter.getSizeInBytes(), copy.getSizeInBytes());
+		Assert.assertEquals(filter.getHashCount(), copy.getHashCount());
+		
+		for (int i = 0; i < WORDS * 2; ++i) {
+			Assert.assertEquals(filter.mightContain(word(i)),
+					copy.mightContain(word(i)));
+		}
+		
+	}
+
+}
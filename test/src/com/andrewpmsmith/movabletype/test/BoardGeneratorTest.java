@@ -0,0 +1,122 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.model.BoardGenerator;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.SignatureIndex;
+import com.andrewpmsmith.movabletype.model.WordList;
+
+import junit.framework.Assert;
+
+public class BoardGeneratorTest extends AndroidTestCase {
+
+	private static final long NO_TIME_LIMIT = 1000000;
+
+	/*
+	 * Test that grids are dealt as before, and meet the thresholds when
+	 * there is time to find one that does
+	 */
+	public void test_thresholds() {
+
+		SignatureIndex index = WordList.getSignatureIndex(getContext());
+		BoardGenerator generator = new BoardGenerator(index, 500, true,
+				NO_TIME_LIMIT);
+		Random r = new Random(1);
+
+		for (int board = 0; board < 20; ++board) {
+
+			char[] grid = generator.generate(r);
+			Assert.assertEquals(GameModel.GRID_ITEMS, grid.length);
+			Assert.assertTrue(generator.countWords(grid) >= 500);
+			Assert.assertTrue(generator.isCovered(grid));
+
+			int vowels = 0;
+			boolean hasQ = false;
+			boolean hasU = false;
+			for (char c : grid) {
+				Assert.assertTrue(c >= 'A' && c <= 'Z');
+				if ("AEIOU".indexOf(c) >= 0)
+					++vowels;
+				hasQ = hasQ || c == 'Q';
+				hasU = hasU || c == 'U';
+			}
+			Assert.assertEquals(4, vowels);
+			Assert.assertTrue(!hasQ || hasU);
+		}
+
+	}
+
+	/*
+	 * Test that the word count and coverage agree with the words the index
+	 * finds
+	 */
+	public void test_countWords() {
+
+		SignatureIndex index = new SignatureIndex(Arrays.asList("A", "AB",
+				"BAD", "CAB", "ZZZ"));
+		BoardGenerator generator = new BoardGenerator(index);
+
+		char[] grid = "ABCDEFGHIJKLMNOPQRSTUVWXY".toCharArray();
+		Assert.assertEquals(3, generator.countWords(grid));
+		Assert.assertFalse(generator.isCovered(grid));
+
+		grid = "ABCDABCDABCDABCDABCDABCDA".toCharArray();
+		Assert.assertEquals(3, generator.countWords(grid));
+		Assert.assertTrue(generator.isCovered(grid));
+
+	}
+
+	/*
+	 * Test that new games share one generator, which deals boards meeting
+	 * the default thresholds
+	 */
+	public void test_shared() {
+
+		BoardGenerator generator = WordList.getBoardGenerator(getContext());
+		Assert.assertSame(generator, WordList.getBoardGenerator(getContext()));
+
+		char[] grid = new char[GameModel.GRID_ITEMS];
+		GameModel gm = new GameModel(getContext());
+		for (int i = 0; i < grid.length; ++i) {
+			grid[i] = gm.getLetter(i);
+		}
+		Assert.assertTrue(generator.getAttempts() >= 1);
+		Assert.assertTrue(generator.countWords(grid) > 0);
+
+	}
+
+	/*
+	 * Test that a grid is still given when none can meet the thresholds in
+	 * time, and that it is the best one dealt
+	 */
+	public void test_budget() {
+
+		SignatureIndex index = WordList.getSignatureIndex(getContext());
+		BoardGenerator generator = new BoardGenerator(index,
+				Integer.MAX_VALUE, true, 0);
+
+		char[] grid = generator.generate(new Random(2));
+		Assert.assertEquals(GameModel.GRID_ITEMS, grid.length);
+		Assert.assertEquals(1, generator.getAttempts());
+
+		generator = new BoardGenerator(index, Integer.MAX_VALUE, false, 20);
+		grid = generator.generate(new Random(2));
+		int attempts = generator.getAttempts();
+		Assert.assertTrue(attempts > 1);
+
+		// Deal the same grids again, and check none had more words
+		int words = generator.countWords(grid);
+		Random r = new Random(2);
+		BoardGenerator single = new BoardGenerator(index, Integer.MAX_VALUE,
+				false, 0);
+		for (int i = 0; i < attempts; ++i) {
+			Assert.assertTrue(single.countWords(single.generate(r)) <= words);
+		}
+
+	}
+
+}
@@ -0,0 +1,196 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.DawgBuilder;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class DawgTest extends TestCase {
+	
+	private Dawg build(String... words) {
+		DawgBuilder builder = new DawgBuilder();
+		for (String word : words) {
+			builder.add(word);
+		}
+		return builder.build();
+	}
+	
+	/*
+	 * Test lookups and error handling
+	 */
+	public void test_functional() {
+		
+		Dawg dawg = build("CAT", "CATS", "DOG", "DOGS", "DOT", "DOTS");
+		
+		Assert.assertEquals(6, dawg.getWordCount());
+		
+		Assert.assertTrue(dawg.contains("CAT"));
+		Assert.assertTrue(dawg.contains("CATS"));
+		Assert.assertTrue(dawg.contains("DOTS"));
+		
+		Assert.assertFalse(dawg.contains("CA"));
+		Assert.assertFalse(dawg.contains("DOGSS"));
+		Assert.assertFalse(dawg.contains("COT"));
+		Assert.assertFalse(dawg.contains("cat"));
+		Assert.assertFalse(dawg.contains("C@T"));
+		Assert.assertFalse(dawg.contains(""));
+		Assert.assertFalse(dawg.contains(null));
+		
+		Assert.assertTrue(dawg.containsPrefix(""));
+		Assert.assertTrue(dawg.containsPrefix("D"));
+		Assert.assertTrue(dawg.containsPrefix("DO"));
+		Assert.assertTrue(dawg.containsPrefix("CATS"));
+		
+		Assert.assertFalse(dawg.containsPrefix("A"));
+		Assert.assertFalse(dawg.containsPrefix("CATSS"));
+		Assert.assertFalse(dawg.containsPrefix(null));
+		
+	}
+	
+	/*
+	 * Test that only words that fit within a set of letters are found
+	 */
+	public void test_formableWords() {
+		
+		Dawg dawg = build("CAT", "CATS", "DOG", "DOGS", "DOT", "DOTS", "TOT");
+		
+		int[] letterCounts = new int[26];
+		for (char c : "STOGDC".toCharArray()) {
+			++letterCounts[c - 'A'];
+		}
+		
+		List<String> words = dawg.findFormableWords(letterCounts);
+		Assert.assertEquals(Arrays.asList("DOG", "DOGS", "DOT", "DOTS"), words);
+		
+		// The counts must not be consumed
+		Assert.assertEquals(1, letterCounts['T' - 'A']);
+		
+		++letterCounts['T' - 'A'];
+		++letterCounts['A' - 'A'];
+		words = dawg.findFormableWords(letterCounts);
+		Assert.assertEquals(Arrays.asList("CAT", "CATS", "DOG", "DOGS", "DOT",
+				"DOTS", "TOT"), words);
+		
+		Assert.assertTrue(dawg.findFormableWords(new int[26]).isEmpty());
+		
+		Assert.assertEquals(Arrays.asList("CAT", "CATS", "DOG", "DOGS", "DOT",
+				"DOTS", "TOT"), dawg.getWords());
+		
+	}
+	
+	/*
+	 * Test that duplicates and invalid words are skipped and that words must
+	 * be added in order.
+	 */
+	public void test_builder() {
+		
+		DawgBuilder builder = new DawgBuilder();
+		
+		Assert.assertTrue(builder.add("APPLE"));
+		Assert.assertFalse(builder.add("APPLE"));
+		Assert.assertFalse(builder.add("APPLE'S"));
+		Assert.assertFalse(builder.add("apples"));
+		Assert.assertFalse(builder.add(null));
+		
+		try {
+			builder.add("AARDVARK");
+			Assert.fail("Out of order word was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		
+		Dawg dawg = builder.build();
+		Assert.assertEquals(1, dawg.getWordCount());
+		Assert.assertTrue(dawg.contains("APPLE"));
+		
+	}
+	
+	/*
+	 * Test that shared suffixes are merged
+	 */
+	public void test_minimisation() {
+		
+		// Every word ends in the same suffix, so the graph should only need
+		// one edge per prefix letter plus one chain for the suffix
+		Dawg dawg = build("BLOWING", "FLOWING", "GLOWING", "SLOWING");
+		
+		Assert.assertTrue(dawg.contains("GLOWING"));
+		Assert.assertFalse(dawg.contains("GLOWIN"));
+		
+		Assert.assertEquals(4 + "LOWING".length() + 1, dawg.getEdgeCount());
+		
+	}
+
+	/*
+	 * Test that a graph can be written out and read back from a buffer
+	 */
+	public void test_serialization() throws IOException {
+		
+		Dawg dawg = build("CAT", "CATS", "DOG", "DOGS", "DOT", "DOTS");
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		dawg.write(out);
+		byte[] bytes = out.toByteArray();
+		
+		Assert.assertEquals(Dawg.HEADER_SIZE + dawg.getSizeInBytes(),
+				bytes.length);
+		
+		Dawg copy = Dawg.read(ByteBuffer.wrap(bytes));
+		
+		Assert.assertEquals(dawg.getWordCount(), copy.getWordCount());
+		Assert.assertEquals(dawg.getEdgeCount(), copy.getEdgeCount());
+		Assert.assertTrue(copy.contains("DOGS"));
+		Assert.assertTrue(copy.containsPrefix("CA"));
+		Assert.assertFalse(copy.contains("DO"));
+		
+		// Damage an edge, so that its child is out of range
+		byte[] damaged = bytes.clone();
+		damaged[Dawg.HEADER_SIZE + 4] = 0x7F;
+		try {
+			Dawg.read(ByteBuffer.wrap(damaged));
+			Assert.fail("Dictionary with a bad checksum was accepted");
+		} catch (IOException e) {
+			// Expected
+		}
+		
+		// The same, with the checksum made to match
+		CRC32 crc = new CRC32();
+		crc.update(damaged, Dawg.HEADER_SIZE,
+				damaged.length - Dawg.HEADER_SIZE);
+		ByteBuffer.wrap(damaged).putInt(Dawg.HEADER_SIZE - 4,
+				(int) crc.getValue());
+		try {
+			Dawg.read(ByteBuffer.wrap(damaged));
+			Assert.fail("Dictionary with a bad child was accepted");
+		} catch (IOException e) {
+			// Expected
+		}
+		
+		// Corrupt the magic number
+		bytes[0] = 0;
+		try {
+			Dawg.read(ByteBuffer.wrap(bytes));
+			Assert.fail("Corrupt dictionary was accepted");
+		} catch (IOException e) {
+			// Expected
+		}
+		
+		// Truncated
+		try {
+			Dawg.read(ByteBuffer.wrap(new byte[Dawg.HEADER_SIZE - 1]));
+			Assert.fail("Truncated dictionary was accepted");
+		} catch (IOException e) {
+			// Expected
+		}
+		
+	}
+
+}
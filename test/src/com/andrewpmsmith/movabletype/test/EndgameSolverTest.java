@@ -0,0 +1,233 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.ai.ComputerPlayer;
+import com.andrewpmsmith.movabletype.ai.EndgameSolver;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+
+import junit.framework.Assert;
+
+public class EndgameSolverTest extends AndroidTestCase {
+
+	private static final int NO_TIME_LIMIT = 1000000;
+
+	private static final char[] GRID = ("CATSQ" + "ZJVXQ" + "ZJVXQ"
+			+ "ZJVXQ" + "ZJVXQ").toCharArray();
+
+	// The tiles of GRID that make words
+	private static final int WORD_TILES = 4;
+
+	/*
+	 * Test that the solver finds the same margin as searching every line of
+	 * play to the end, that its move achieves that margin, and that it
+	 * leaves the game as it found it
+	 */
+	public void test_matchesBruteForce() {
+
+		Random r = new Random(3);
+
+		for (int unplayed = 1; unplayed <= 3; ++unplayed) {
+			for (int position = 0; position < 4; ++position) {
+
+				GameModel gm = gridEndgame(r, unplayed);
+				Assert.assertEquals(unplayed, EndgameSolver.countUnplayed(gm));
+				byte[] before = gm.serialize();
+
+				EndgameSolver solver = new EndgameSolver(gm);
+				Assert.assertTrue(solver.solve(NO_TIME_LIMIT));
+				Assert.assertTrue(solver.isProven());
+				Assert.assertTrue(Arrays.equals(before, gm.serialize()));
+
+				int root = (gm.getGameState() == GameState.PLAYER1_TURN)
+						? GameModel.PLAYER1 : GameModel.PLAYER2;
+				int expected = bruteForce(gm, 0, root,
+						new TreeSet<String>(), new HashMap<String, Integer>());
+				Assert.assertEquals(expected, solver.getMargin());
+				Assert.assertEquals(expected,
+						valueOf(gm, solver.getMove(), root));
+			}
+		}
+
+	}
+
+	/*
+	 * Test that a position that can't be solved in time isn't reported as
+	 * solved
+	 */
+	public void test_outOfTime() {
+
+		GameModel gm = new GameModel(getContext());
+		EndgameSolver solver = new EndgameSolver(gm);
+
+		Assert.assertFalse(solver.solve(0));
+		Assert.assertFalse(solver.isProven());
+		Assert.assertTrue(solver.getMove().isPass());
+
+	}
+
+	/*
+	 * Test that an abort from another thread isn't forgotten when solving
+	 * starts after it
+	 */
+	public void test_abortBeforeSolve() {
+
+		EndgameSolver solver = new EndgameSolver(gridEndgame(new Random(4), 1));
+		solver.abort();
+
+		Assert.assertFalse(solver.solve(NO_TIME_LIMIT));
+		Assert.assertTrue(solver.getElapsedMillis() < 100);
+		Assert.assertFalse(solver.solve(NO_TIME_LIMIT));
+
+	}
+
+	/*
+	 * Test that the computer plays the solver's move near the end of the
+	 * game
+	 */
+	public void test_computerPlayer() throws InterruptedException {
+
+		final BlockingQueue<Move> results = new LinkedBlockingQueue<Move>();
+		Executor direct = new Executor() {
+
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+
+		};
+
+		GameModel gm = gridEndgame(new Random(5), 2);
+		int root = (gm.getGameState() == GameState.PLAYER1_TURN)
+				? GameModel.PLAYER1 : GameModel.PLAYER2;
+
+		EndgameSolver solver = new EndgameSolver(GameModel.deserialize(
+				gm.serialize(), getContext()));
+		Assert.assertTrue(solver.solve(NO_TIME_LIMIT));
+		int expected = solver.getMargin();
+
+		ComputerPlayer computer = new ComputerPlayer(getContext(),
+				ComputerPlayer.Engine.ALPHA_BETA, 10000, 1);
+		computer.play(gm, new ComputerPlayer.MoveCallback() {
+
+			@Override
+			public void onMoveChosen(Move move) {
+				results.add(move);
+			}
+
+		}, direct);
+
+		Move move = results.poll(30, TimeUnit.SECONDS);
+		Assert.assertNotNull(move);
+		Assert.assertEquals(expected, valueOf(gm, move, root));
+
+	}
+
+	/*
+	 * A game on GRID with all but the given number of its word tiles owned,
+	 * at random, by either player
+	 */
+	private GameModel gridEndgame(Random r, int unplayed) {
+
+		LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = r.nextBoolean() ? LetterState.PLAYER1_OWNED
+					: LetterState.PLAYER2_OWNED;
+		}
+
+		for (int left = unplayed; left > 0;) {
+			int i = r.nextInt(WORD_TILES);
+			if (states[i] != LetterState.UNPLAYED) {
+				states[i] = LetterState.UNPLAYED;
+				--left;
+			}
+		}
+
+		GameState state = r.nextBoolean() ? GameState.PLAYER1_TURN
+				: GameState.PLAYER2_TURN;
+		return new GameModel(GRID, states, state, getContext());
+	}
+
+	/*
+	 * The final margin for the player to move, if both play their best,
+	 * found by trying every line of play
+	 */
+	private int bruteForce(GameModel gm, int ply, int rootPlayer,
+			SortedSet<String> played, Map<String, Integer> seen) {
+
+		if (gm.getGameState() == GameState.GAME_OVER) {
+			int player = (ply % 2 == 0) ? rootPlayer : 1 - rootPlayer;
+			return Integer.bitCount(gm.getOwnedTiles(player))
+					- Integer.bitCount(gm.getOwnedTiles(1 - player));
+		}
+
+		// The rest of the game only depends on who owns what, whose turn it
+		// is, and which words have been played
+		String key = gm.getOwnedTiles(GameModel.PLAYER1) + " "
+				+ gm.getOwnedTiles(GameModel.PLAYER2) + " "
+				+ gm.getGameState() + " " + gm.hasPassed() + " " + played;
+		Integer known = seen.get(key);
+		if (known != null)
+			return known;
+
+		int best = Integer.MIN_VALUE;
+		for (Move move : GameFixtures.legalMoves(gm)) {
+			String word = word(gm, move);
+			Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+			if (!move.isPass())
+				played.add(word);
+			best = Math.max(best,
+					-bruteForce(gm, ply + 1, rootPlayer, played, seen));
+			if (!move.isPass())
+				played.remove(word);
+			gm.undo(move);
+		}
+
+		seen.put(key, best);
+		return best;
+	}
+
+	/*
+	 * The final margin for the player to move if they play move, and both
+	 * play their best after it
+	 */
+	private int valueOf(GameModel gm, Move move, int rootPlayer) {
+
+		SortedSet<String> played = new TreeSet<String>();
+		if (!move.isPass())
+			played.add(word(gm, move));
+
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+		int value = -bruteForce(gm, 1, rootPlayer, played,
+				new HashMap<String, Integer>());
+		gm.undo(move);
+
+		return value;
+	}
+
+	private String word(GameModel gm, Move move) {
+
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i < move.getLength(); ++i) {
+			word.append(gm.getLetter(move.getTile(i)));
+		}
+		return word.toString();
+	}
+
+}
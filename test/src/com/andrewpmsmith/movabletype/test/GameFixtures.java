@@ -0,0 +1,288 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import android.content.Context;
+
+import com.andrewpmsmith.movabletype.ai.EndgameSolver;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+import com.andrewpmsmith.movabletype.model.WordTrie;
+
+import junit.framework.Assert;
+
+/*
+ * Games and moves shared by the tests and benchmarks, and the capture rules
+ * as they were first written, to check GameModel against.
+ */
+final class GameFixtures {
+
+	private GameFixtures() {
+	}
+
+	/*
+	 * Every word that can be spelt on gm's board.
+	 */
+	static List<String> boardWords(GameModel gm) {
+
+		List<String> words = new ArrayList<String>();
+		WordTrie.WordIterator it = gm.getBoardWords().iterateWords();
+		while (it.next()) {
+			words.add(it.getWord());
+		}
+
+		return words;
+	}
+
+	/*
+	 * Pick tiles spelling word at random, or return null if the board can't
+	 * spell it.
+	 */
+	static List<Integer> randomTiles(GameModel gm, String word, Random r) {
+
+		List<Integer> tiles = new ArrayList<Integer>();
+
+		for (int i = 0; i < word.length(); ++i) {
+			List<Integer> choices = new ArrayList<Integer>();
+			for (int t = 0; t < GameModel.GRID_ITEMS; ++t) {
+				if (gm.getLetter(t) == word.charAt(i) && !tiles.contains(t))
+					choices.add(t);
+			}
+			if (choices.isEmpty())
+				return null;
+			tiles.add(choices.get(r.nextInt(choices.size())));
+		}
+
+		return tiles;
+	}
+
+	/*
+	 * Every word the player to move can play, as MoveGenerator lists them.
+	 */
+	static List<Move> legalWords(GameModel gm) {
+
+		List<Move> moves = new ArrayList<Move>();
+
+		MoveGenerator generator = new MoveGenerator(gm);
+		while (generator.next()) {
+			Move move = new Move();
+			generator.getMove(move);
+			moves.add(move);
+		}
+
+		return moves;
+	}
+
+	/*
+	 * The moves a search considers: every legal word and a pass.
+	 */
+	static List<Move> legalMoves(GameModel gm) {
+
+		List<Move> moves = legalWords(gm);
+		moves.add(new Move());
+
+		return moves;
+	}
+
+	/*
+	 * A new game played at random until exactly unplayed tiles are left
+	 * unplayed. Games that end or skip past that count are dealt again.
+	 */
+	static GameModel playToEndgame(Context context, Random r, int unplayed) {
+
+		while (true) {
+			GameModel gm = new GameModel(context);
+
+			while (gm.getGameState() != GameState.GAME_OVER
+					&& EndgameSolver.countUnplayed(gm) > unplayed) {
+				List<Move> moves = legalWords(gm);
+				if (moves.isEmpty())
+					break;
+				gm.apply(moves.get(r.nextInt(moves.size())));
+			}
+
+			if (gm.getGameState() != GameState.GAME_OVER
+					&& EndgameSolver.countUnplayed(gm) == unplayed)
+				return gm;
+		}
+	}
+
+	/*
+	 * The change in the mover's lead if the current player played tiles, as
+	 * shown by getPoints(..)
+	 */
+	static int swing(GameModel gm, List<Integer> tiles) {
+
+		int mover = (gm.getGameState() == GameState.PLAYER1_TURN)
+				? GameModel.PLAYER1 : GameModel.PLAYER2;
+		int opponent = GameModel.PLAYER1 + GameModel.PLAYER2 - mover;
+
+		gm.setWord(null);
+		int before = gm.getPoints(mover) - gm.getPoints(opponent);
+		gm.setWord(tiles);
+		int after = gm.getPoints(mover) - gm.getPoints(opponent);
+		gm.setWord(null);
+
+		return after - before;
+	}
+
+	static int swing(GameModel gm, Move move) {
+
+		List<Integer> tiles = new ArrayList<Integer>();
+		for (int i = 0; i < move.getLength(); ++i) {
+			tiles.add(move.getTile(i));
+		}
+
+		return swing(gm, tiles);
+	}
+
+	/*
+	 * Play turnCount turns against the reference rules. Each board starts
+	 * with its tiles owned at random, so that the captures are also checked
+	 * from positions that the rules haven't settled, and gamesPerBoard games
+	 * are played from it.
+	 */
+	static void playRandomStarts(Context context, int turnCount,
+			int gamesPerBoard, Random r) {
+
+		LetterState[] allStates = LetterState.values();
+
+		int turns = 0;
+
+		while (turns < turnCount) {
+
+			char[] grid = new char[GameModel.GRID_ITEMS];
+			LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+
+			GameModel random = new GameModel(context);
+			for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+				grid[i] = random.getLetter(i);
+				states[i] = allStates[r.nextInt(allStates.length)];
+			}
+
+			byte[] saved = new GameModel(grid, states, GameState.PLAYER1_TURN,
+					context).serialize();
+			List<String> words = boardWords(random);
+
+			for (int game = 0; game < gamesPerBoard && turns < turnCount;
+					++game) {
+				GameModel gm = GameModel.deserialize(saved, context);
+				turns += playAgainstReference(gm, states.clone(),
+						new ArrayList<String>(words), r);
+			}
+		}
+
+	}
+
+	/*
+	 * Play random words from words until the game is over, applying the
+	 * original rules to reference alongside.
+	 *
+	 * @return the number of turns played.
+	 */
+	static int playAgainstReference(GameModel gm, LetterState[] reference,
+			List<String> words, Random r) {
+
+		int turns = 0;
+
+		while (turns < 200 && gm.getGameState() != GameState.GAME_OVER
+				&& !words.isEmpty()) {
+
+			String word = words.get(r.nextInt(words.size()));
+			List<Integer> tiles = randomTiles(gm, word, r);
+			boolean player1 = gm.getGameState() == GameState.PLAYER1_TURN;
+
+			gm.setWord(tiles);
+			if (gm.playTurn() != TurnResult.SUCCESS) {
+				words.remove(word);
+				continue;
+			}
+			++turns;
+
+			for (int i : tiles) {
+				if (reference[i] != LetterState.PLAYER1_SURROUNDED
+						&& reference[i] != LetterState.PLAYER2_SURROUNDED) {
+					reference[i] = player1 ? LetterState.PLAYER1_OWNED
+							: LetterState.PLAYER2_OWNED;
+				}
+			}
+			referenceMakeCaptures(reference);
+
+			int p1Points = 0;
+			int p2Points = 0;
+			for (int i = 0; i < reference.length; ++i) {
+				if (reference[i] != gm.getLetterState(i)) {
+					Assert.fail("turn " + turns + " tile " + i + " expected "
+							+ reference[i] + " was " + gm.getLetterState(i));
+				}
+				if (reference[i] == LetterState.PLAYER1_OWNED
+						|| reference[i] == LetterState.PLAYER1_SURROUNDED)
+					++p1Points;
+				if (reference[i] == LetterState.PLAYER2_OWNED
+						|| reference[i] == LetterState.PLAYER2_SURROUNDED)
+					++p2Points;
+			}
+			Assert.assertEquals(p1Points, gm.getPoints(GameModel.PLAYER1));
+			Assert.assertEquals(p2Points, gm.getPoints(GameModel.PLAYER2));
+		}
+
+		return turns;
+	}
+
+	/*
+	 * The capture rules as they were first written, one tile at a time over
+	 * an array of states. Used as a reference for the bitboards.
+	 */
+	static void referenceMakeCaptures(LetterState[] grid) {
+
+		final int columns = GameModel.GRID_COLUMNS;
+		final int items = GameModel.GRID_ITEMS;
+
+		for (int tile = 0; tile < items; ++tile) {
+
+			LetterState currentTileState = grid[tile];
+
+			final int left = tile - 1;
+			final int right = tile + 1;
+			final int above = tile - columns;
+			final int below = tile + columns;
+
+			LetterState[] surrounding = new LetterState[4];
+			surrounding[0] = (left >= 0 && left % columns < tile % columns)
+					? grid[left] : null;
+			surrounding[1] = (tile % columns < right % columns)
+					? grid[right] : null;
+			surrounding[2] = (above >= 0) ? grid[above] : null;
+			surrounding[3] = (below < items) ? grid[below] : null;
+
+			boolean player1Surrounded = true;
+			boolean player2Surrounded = true;
+
+			for (int i = 0; i < 4; ++i) {
+				player1Surrounded &= (surrounding[i] == null
+						|| surrounding[i] == LetterState.PLAYER1_OWNED
+						|| surrounding[i] == LetterState.PLAYER1_SURROUNDED);
+				player2Surrounded &= (surrounding[i] == null
+						|| surrounding[i] == LetterState.PLAYER2_OWNED
+						|| surrounding[i] == LetterState.PLAYER2_SURROUNDED);
+			}
+
+			if (player1Surrounded) {
+				grid[tile] = LetterState.PLAYER1_SURROUNDED;
+			} else if (currentTileState == LetterState.PLAYER1_SURROUNDED) {
+				grid[tile] = LetterState.PLAYER1_OWNED;
+			} else if (player2Surrounded) {
+				grid[tile] = LetterState.PLAYER2_SURROUNDED;
+			} else if (currentTileState == LetterState.PLAYER2_SURROUNDED) {
+				grid[tile] = LetterState.PLAYER2_OWNED;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Random;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/*
+ * Plays a million turns from boards with their tiles owned at random,
+ * checking after each that the captures and scores match the rules as they
+ * were first written. Too slow to run with GameModelTest, which plays a few
+ * thousand. How long it took is written to the log under the tag
+ * GameModelBenchmark.
+ */
+public class GameModelBenchmark extends AndroidTestCase {
+
+	private static final String TAG = "GameModelBenchmark";
+	private static final int TURNS = 1000000;
+	private static final int GAMES_PER_BOARD = 100;
+
+	public void test_capturesMatchReference() {
+
+		// Warm up
+		GameFixtures.playRandomStarts(getContext(), 1000, GAMES_PER_BOARD,
+				new Random(1));
+
+		long start = System.nanoTime();
+		GameFixtures.playRandomStarts(getContext(), TURNS, GAMES_PER_BOARD,
+				new Random(7));
+		long time = System.nanoTime() - start;
+
+		Log.i(TAG, String.format("%d turns checked in %d ms (%.2f us/turn)",
+				TURNS, time / 1000000, time / 1e3 / TURNS));
+
+	}
+
+}
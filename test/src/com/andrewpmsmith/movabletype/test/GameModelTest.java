@@ -1,7 +1,14 @@
 package com.andrewpmsmith.movabletype.test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import android.test.AndroidTestCase;
 
@@ -10,6 +17,9 @@ import com.andrewpmsmith.movabletype.model.GameModel.GameResult;
 import com.andrewpmsmith.movabletype.model.GameModel.GameState;
 import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
 import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.WordTrie;
+import com.andrewpmsmith.movabletype.model.Zobrist;
 
 import junit.framework.Assert;
 
@@ -162,8 +172,6 @@ public class GameModelTest extends AndroidTestCase {
 				UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,};
 		
 		GameState gameState = GameState.PLAYER1_TURN;
-		int p1Points = 0;
-		int p2Points = 0;
 		
 		
 		// Create the GameModel instance
@@ -171,8 +179,6 @@ public class GameModelTest extends AndroidTestCase {
 		GameModel gm = new GameModel(testGrid,
 				states,
 				gameState,
-				p1Points,
-				p2Points,
 				getContext());
 		return gm;
 	}
@@ -203,7 +209,37 @@ public class GameModelTest extends AndroidTestCase {
 		Assert.assertEquals("player 1 score", 0, points1);
 		Assert.assertEquals("player 2 score", 3, points2);
 	}
-	
+
+	/*
+	 * Test that a game created part way through is scored from its tiles,
+	 * and that the deprecated constructor ignores the scores it is given
+	 */
+	@SuppressWarnings("deprecation")
+	public void test_pointsFromStates() {
+		final char[] testGrid =
+			("XXXMY" +
+			 "XXXXE" +
+			 "XXXXX" +
+			 "XXXXX" +
+			 "XXXXX").toCharArray();
+
+		LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+		Arrays.fill(states, LetterState.UNPLAYED);
+		states[3] = LetterState.PLAYER1_OWNED;
+		states[4] = LetterState.PLAYER2_SURROUNDED;
+		states[9] = LetterState.PLAYER2_OWNED;
+
+		GameModel gm = new GameModel(testGrid, states,
+				GameState.PLAYER1_TURN, getContext());
+		Assert.assertEquals(1, gm.getPoints(GameModel.PLAYER1));
+		Assert.assertEquals(2, gm.getPoints(GameModel.PLAYER2));
+
+		gm = new GameModel(testGrid, states, GameState.PLAYER1_TURN, 20, 3,
+				getContext());
+		Assert.assertEquals(1, gm.getPoints(GameModel.PLAYER1));
+		Assert.assertEquals(2, gm.getPoints(GameModel.PLAYER2));
+	}
+
 	/*
 	 * Test that instances can be serialized and restored
 	 */
@@ -327,4 +363,264 @@ public class GameModelTest extends AndroidTestCase {
 	}
 	
 	
+	/*
+	 * Test that the board's words are found and survive serialization
+	 */
+	public void test_boardWords() {
+		
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+		GameModel gm = createSampleModel(testGrid);
+		
+		WordTrie boardWords = gm.getBoardWords();
+		Assert.assertNotNull(boardWords);
+		Assert.assertTrue(boardWords.isFrozen());
+		Assert.assertTrue(boardWords.contains("THE"));
+		Assert.assertTrue(boardWords.contains("QUICK"));
+		
+		// Needs two Os
+		Assert.assertFalse(boardWords.contains("ROOT"));
+		// No Z on the board
+		Assert.assertFalse(boardWords.contains("ZEBRA"));
+		
+		GameModel copy = GameModel.deserialize(gm.serialize(), getContext());
+		Assert.assertTrue(copy.getBoardWords().isFrozen());
+		Assert.assertTrue(copy.getBoardWords().contains("QUICK"));
+		Assert.assertFalse(copy.getBoardWords().contains("ROOT"));
+		
+	}
+	
+	/*
+	 * Play turns asynchronously, delivering results to a single thread
+	 * executor standing in for the UI thread. Test that results arrive on
+	 * that thread and that the turn is committed before the callback runs.
+	 */
+	public void test_asyncPlayTurn() throws InterruptedException {
+		
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+		final GameModel gm = createSampleModel(testGrid);
+		
+		final Thread[] resultThread = new Thread[1];
+		ExecutorService resultExecutor = Executors.newSingleThreadExecutor();
+		resultExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				resultThread[0] = Thread.currentThread();
+			}
+		});
+		
+		final BlockingQueue<Object[]> results =
+				new LinkedBlockingQueue<Object[]>();
+		GameModel.TurnCallback callback = new GameModel.TurnCallback() {
+			@Override
+			public void onTurnPlayed(TurnResult result) {
+				results.add(new Object[] { result, Thread.currentThread(),
+						gm.getGameState() });
+			}
+		};
+		
+		String[] words = { "THE", "QRX", "THE", "T" };
+		TurnResult[] expected = { TurnResult.SUCCESS,
+				TurnResult.WORD_NOT_IN_DICTIONARY,
+				TurnResult.WORD_ALREADY_PLAYED,
+				TurnResult.WORD_LESS_THAN_TWO_LETTERS };
+		GameState[] expectedState = { GameState.PLAYER2_TURN,
+				GameState.PLAYER2_TURN, GameState.PLAYER2_TURN,
+				GameState.PLAYER2_TURN };
+		
+		try {
+			for (int i = 0; i < words.length; ++i) {
+				gm.setWord(generateIndexListFromWord(words[i], testGrid));
+				gm.playTurn(callback, resultExecutor);
+				
+				Object[] result = results.poll(5, TimeUnit.SECONDS);
+				Assert.assertNotNull("no result for " + words[i], result);
+				Assert.assertEquals(words[i], expected[i], result[0]);
+				Assert.assertSame(resultThread[0], result[1]);
+				Assert.assertEquals(expectedState[i], result[2]);
+			}
+		} finally {
+			resultExecutor.shutdown();
+		}
+		
+		gm.setWord(null);
+		Assert.assertEquals(3, gm.getPoints(GameModel.PLAYER1));
+		
+	}
+	
+	/*
+	 * Play random games and check that after every turn the tile states and
+	 * scores match the original rules
+	 */
+	public void test_capturesMatchReference() {
+		
+		Random r = new Random(42);
+		
+		for (int game = 0; game < 20; ++game) {
+			
+			GameModel gm = new GameModel(getContext());
+			
+			LetterState[] reference = new LetterState[GameModel.GRID_ITEMS];
+			for (int i = 0; i < reference.length; ++i) {
+				reference[i] = LetterState.UNPLAYED;
+			}
+			
+			GameFixtures.playAgainstReference(gm, reference,
+					GameFixtures.boardWords(gm), r);
+		}
+		
+	}
+	
+	/*
+	 * As above from boards with their tiles owned at random, so that the
+	 * captures are also checked from positions that the rules haven't
+	 * settled. GameModelBenchmark plays many more turns.
+	 */
+	public void test_capturesMatchReferenceRandomStart() {
+		
+		GameFixtures.playRandomStarts(getContext(), 2000, 10, new Random(7));
+		
+	}
+	
+	/*
+	 * Apply and undo random moves, including passes and words that break
+	 * the rules, and test that undoing each one restores the game exactly
+	 */
+	public void test_applyUndo() {
+		
+		Random r = new Random(3);
+		
+		for (int game = 0; game < 10; ++game) {
+			
+			GameModel gm = new GameModel(getContext());
+			List<String> words = GameFixtures.boardWords(gm);
+			
+			List<Move> played = new ArrayList<Move>();
+			List<byte[]> saves = new ArrayList<byte[]>();
+			
+			while (gm.getGameState() != GameState.GAME_OVER) {
+				
+				byte[] before = gm.serialize();
+				
+				for (int i = 0; i < 10; ++i) {
+					Move move = randomMove(gm, words, r);
+					if (gm.apply(move) == TurnResult.SUCCESS) {
+						Assert.assertTrue(move.isApplied());
+						gm.undo(move);
+					}
+					Assert.assertFalse(move.isApplied());
+					Assert.assertTrue(Arrays.equals(before, gm.serialize()));
+				}
+				
+				Move move = randomMove(gm, words, r);
+				if (gm.apply(move) == TurnResult.SUCCESS) {
+					played.add(move);
+					saves.add(before);
+				}
+			}
+			
+			for (int i = played.size() - 1; i >= 0; --i) {
+				gm.undo(played.get(i));
+				Assert.assertTrue(Arrays.equals(saves.get(i), gm.serialize()));
+			}
+		}
+		
+		GameModel gm = new GameModel(getContext());
+		Move pass = new Move();
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(pass));
+		try {
+			gm.apply(pass);
+			Assert.fail("Move was applied twice");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		gm.undo(pass);
+		try {
+			gm.undo(pass);
+			Assert.fail("Move was undone twice");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		
+	}
+	
+	/*
+	 * Play random games with playTurn(), passTurn() and apply(..), and test
+	 * that the hash kept by the game always matches one worked out from
+	 * scratch, survives saving, and is restored by undo(..)
+	 */
+	public void test_hash() {
+		
+		Random r = new Random(5);
+		
+		for (int game = 0; game < 10; ++game) {
+			
+			GameModel gm = new GameModel(getContext());
+			List<String> words = GameFixtures.boardWords(gm);
+			Assert.assertEquals(Zobrist.hash(gm), gm.getHash());
+			
+			for (int turn = 0; turn < 20
+					&& gm.getGameState() != GameState.GAME_OVER; ++turn) {
+				
+				if (r.nextInt(10) == 0) {
+					gm.passTurn();
+				} else {
+					String word = words.get(r.nextInt(words.size()));
+					gm.setWord(GameFixtures.randomTiles(gm, word, r));
+					gm.playTurn();
+				}
+				
+				Assert.assertEquals(Zobrist.hash(gm), gm.getHash());
+			}
+			
+			GameModel copy = GameModel.deserialize(gm.serialize(),
+					getContext());
+			Assert.assertEquals(gm.getHash(), copy.getHash());
+			
+			long before = gm.getHash();
+			List<Move> played = new ArrayList<Move>();
+			
+			for (int turn = 0; turn < 10
+					&& gm.getGameState() != GameState.GAME_OVER; ++turn) {
+				Move move = randomMove(gm, words, r);
+				if (gm.apply(move) == TurnResult.SUCCESS)
+					played.add(move);
+				Assert.assertEquals(Zobrist.hash(gm), gm.getHash());
+			}
+			
+			for (int i = played.size() - 1; i >= 0; --i) {
+				gm.undo(played.get(i));
+			}
+			Assert.assertEquals(before, gm.getHash());
+		}
+		
+		// Games on different grids hash differently from the start
+		GameModel a = new GameModel(getContext());
+		GameModel b = new GameModel(getContext());
+		Assert.assertTrue(a.getHash() != b.getHash());
+		
+	}
+	
+	/*
+	 * A pass one time in twenty, otherwise a random board word, which may
+	 * already have been played
+	 */
+	private Move randomMove(GameModel gm, List<String> words, Random r) {
+		
+		if (r.nextInt(20) == 0)
+			return new Move();
+		
+		String word = words.get(r.nextInt(words.size()));
+		return new Move(GameFixtures.randomTiles(gm, word, r));
+	}
+	
 }
@@ -0,0 +1,157 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.ai.EndgameSolver;
+import com.andrewpmsmith.movabletype.ai.HintFinder;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+
+import junit.framework.Assert;
+
+public class HintFinderTest extends AndroidTestCase {
+
+	private static final int NO_TIME_LIMIT = 1000000;
+
+	// Runs each task when told to
+	private static class QueuedExecutor implements Executor {
+
+		private final List<Runnable> mTasks = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable command) {
+			mTasks.add(command);
+		}
+
+		public void runAll() {
+			for (Runnable task : mTasks) {
+				task.run();
+			}
+			mTasks.clear();
+		}
+
+	}
+
+	/*
+	 * Test that the hint is a word with the largest swing in the score, as
+	 * getPoints(..) counts it, during random games
+	 */
+	public void test_bestSwing() {
+
+		Random r = new Random(2);
+		QueuedExecutor executor = new QueuedExecutor();
+		HintFinder finder = new HintFinder(getContext(), executor, 0);
+
+		for (int game = 0; game < 3; ++game) {
+
+			GameModel gm = new GameModel(getContext());
+
+			for (int turn = 0; turn < 6
+					&& gm.getGameState() != GameState.GAME_OVER; ++turn) {
+
+				finder.start(gm);
+				executor.runAll();
+				Assert.assertTrue(finder.isFinished());
+
+				List<Move> moves = GameFixtures.legalWords(gm);
+				Move hint = finder.getHint();
+				if (moves.isEmpty()) {
+					Assert.assertNull(hint);
+					break;
+				}
+				Assert.assertNotNull(hint);
+
+				int best = Integer.MIN_VALUE;
+				for (Move move : moves) {
+					best = Math.max(best, GameFixtures.swing(gm, move));
+				}
+				Assert.assertEquals(best, GameFixtures.swing(gm, hint));
+
+				Assert.assertEquals(TurnResult.SUCCESS, gm.apply(hint));
+				gm.undo(hint);
+				gm.apply(moves.get(r.nextInt(moves.size())));
+			}
+		}
+
+	}
+
+	/*
+	 * Test that no hint is given before the search has run, and that a
+	 * cancelled search gives none
+	 */
+	public void test_cancel() {
+
+		QueuedExecutor executor = new QueuedExecutor();
+		HintFinder finder = new HintFinder(getContext(), executor, 0);
+		GameModel gm = new GameModel(getContext());
+
+		finder.start(gm);
+		Assert.assertNull(finder.getHint());
+		Assert.assertFalse(finder.isFinished());
+
+		finder.cancel();
+		executor.runAll();
+		Assert.assertNull(finder.getHint());
+		Assert.assertFalse(finder.isFinished());
+
+		// Only the latest position is searched
+		finder.start(gm);
+		finder.start(gm);
+		executor.runAll();
+		Assert.assertNotNull(finder.getHint());
+		Assert.assertTrue(finder.isFinished());
+
+	}
+
+	/*
+	 * Test that near the end of the game the hint is the solver's best
+	 * finish
+	 */
+	public void test_bestFinish() {
+
+		final char[] grid = ("CATSQ" + "ZJVXQ" + "ZJVXQ" + "ZJVXQ" + "ZJVXQ")
+				.toCharArray();
+
+		// Player 1 owns everything but the A and T of CAT, and the rest of
+		// the first row is player 2's
+		LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = (i < 5) ? LetterState.PLAYER2_OWNED
+					: LetterState.PLAYER1_OWNED;
+		}
+		states[1] = LetterState.UNPLAYED;
+		states[2] = LetterState.UNPLAYED;
+		GameModel gm = new GameModel(grid, states, GameState.PLAYER1_TURN,
+				getContext());
+		Assert.assertTrue(EndgameSolver.countUnplayed(gm)
+				<= EndgameSolver.MAX_UNPLAYED);
+
+		EndgameSolver solver = new EndgameSolver(GameModel.deserialize(
+				gm.serialize(), getContext()));
+		Assert.assertTrue(solver.solve(NO_TIME_LIMIT));
+		Move best = solver.getMove();
+		Assert.assertFalse(best.isPass());
+
+		QueuedExecutor executor = new QueuedExecutor();
+		HintFinder finder = new HintFinder(getContext(), executor,
+				NO_TIME_LIMIT);
+		finder.start(gm);
+		executor.runAll();
+
+		Move hint = finder.getHint();
+		Assert.assertEquals(best.getLength(), hint.getLength());
+		for (int i = 0; i < best.getLength(); ++i) {
+			Assert.assertEquals(best.getTile(i), hint.getTile(i));
+		}
+
+	}
+
+}
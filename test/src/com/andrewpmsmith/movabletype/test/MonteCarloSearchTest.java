@@ -0,0 +1,163 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.ai.ComputerPlayer;
+import com.andrewpmsmith.movabletype.ai.MonteCarloSearch;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+
+import junit.framework.Assert;
+
+public class MonteCarloSearchTest extends AndroidTestCase {
+
+	private static final int NO_TIME_LIMIT = 1000000;
+
+	/*
+	 * Test that the move found can be played, and that the search leaves the
+	 * game as it found it
+	 */
+	public void test_legalMove() {
+
+		for (int game = 0; game < 5; ++game) {
+
+			GameModel gm = new GameModel(getContext());
+			MonteCarloSearch search = new MonteCarloSearch(gm, game);
+
+			for (int turn = 0; turn < 4
+					&& gm.getGameState() != GameState.GAME_OVER; ++turn) {
+
+				byte[] before = gm.serialize();
+				Move move = search.findMove(50, Integer.MAX_VALUE);
+				Assert.assertTrue(Arrays.equals(before, gm.serialize()));
+
+				Assert.assertTrue(search.getPlayoutCount() > 0);
+				Assert.assertTrue(search.getTreeSize() > 1);
+				Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+			}
+		}
+
+	}
+
+	/*
+	 * Test that when the opponent has just passed while behind, passing to
+	 * end the game and win is chosen
+	 */
+	public void test_takesWin() {
+
+		GameModel gm = sparseGame(GameState.PLAYER2_TURN);
+		gm.apply(new Move());
+		Assert.assertTrue(gm.hasPassed());
+
+		MonteCarloSearch search = new MonteCarloSearch(gm, 1);
+		Move move = search.findMove(NO_TIME_LIMIT, 5000);
+		Assert.assertTrue(move.isPass());
+
+	}
+
+	/*
+	 * Test that the same seed and number of playouts give the same move
+	 */
+	public void test_deterministic() {
+
+		GameModel gm = new GameModel(getContext());
+
+		MonteCarloSearch first = new MonteCarloSearch(gm, 7);
+		Move a = first.findMove(NO_TIME_LIMIT, 2000);
+		MonteCarloSearch second = new MonteCarloSearch(gm, 7);
+		Move b = second.findMove(NO_TIME_LIMIT, 2000);
+
+		Assert.assertEquals(2000, first.getPlayoutCount());
+		Assert.assertEquals(first.getTreeSize(), second.getTreeSize());
+		Assert.assertEquals(a.getLength(), b.getLength());
+		for (int i = 0; i < a.getLength(); ++i) {
+			Assert.assertEquals(a.getTile(i), b.getTile(i));
+		}
+
+	}
+
+	/*
+	 * Test that a full tree stops growing and the search carries on
+	 */
+	public void test_fullTree() {
+
+		final int treeSize = 1000;
+
+		GameModel gm = new GameModel(getContext());
+		MonteCarloSearch search = new MonteCarloSearch(gm, 3, treeSize);
+		Move move = search.findMove(NO_TIME_LIMIT, 5000);
+
+		Assert.assertEquals(5000, search.getPlayoutCount());
+		Assert.assertTrue(search.getTreeSize() <= treeSize);
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+
+		// Too small for even the first move's words
+		search = new MonteCarloSearch(gm, 3, 1);
+		move = search.findMove(NO_TIME_LIMIT, 10);
+		Assert.assertEquals(1, search.getTreeSize());
+		Assert.assertTrue(move.isPass());
+
+	}
+
+	/*
+	 * Test that the computer can play with Monte Carlo search
+	 */
+	public void test_computerPlayer() throws InterruptedException {
+
+		final BlockingQueue<Move> results = new LinkedBlockingQueue<Move>();
+		Executor direct = new Executor() {
+
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+
+		};
+
+		GameModel gm = new GameModel(getContext(), true);
+		ComputerPlayer computer = new ComputerPlayer(getContext(),
+				ComputerPlayer.Engine.MONTE_CARLO, 100, 1);
+
+		computer.play(gm, new ComputerPlayer.MoveCallback() {
+
+			@Override
+			public void onMoveChosen(Move move) {
+				results.add(move);
+			}
+
+		}, direct);
+
+		Move move = results.poll(10, TimeUnit.SECONDS);
+		Assert.assertNotNull(move);
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+
+	}
+
+	/*
+	 * Player 1 owns one tile of a board with few words, and it is the turn
+	 * of state
+	 */
+	private GameModel sparseGame(GameState state) {
+
+		final char[] grid = ("CATSQ" + "ZJVXQ" + "ZJVXQ" + "ZJVXQ" + "ZJVXQ")
+				.toCharArray();
+
+		LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = LetterState.UNPLAYED;
+		}
+		states[24] = LetterState.PLAYER1_OWNED;
+
+		return new GameModel(grid, states, state, getContext());
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.andrewpmsmith.movabletype.test;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+
+/*
+ * Times listing every legal word on random boards, part way through a game.
+ * Results are written to the log under the tag MoveGeneratorBenchmark.
+ */
+public class MoveGeneratorBenchmark extends AndroidTestCase {
+
+	private static final String TAG = "MoveGeneratorBenchmark";
+	private static final int BOARDS = 20;
+	private static final int TURNS = 6;
+	private static final int ROUNDS = 50;
+
+	public void test_generate() {
+
+		GameModel[] games = new GameModel[BOARDS];
+		MoveGenerator[] generators = new MoveGenerator[BOARDS];
+		Move move = new Move();
+
+		// Play the best few words on each board, so that some words have
+		// been ruled out and some tiles are owned
+		for (int i = 0; i < BOARDS; ++i) {
+			games[i] = new GameModel(getContext());
+			generators[i] = new MoveGenerator(games[i]);
+
+			for (int turn = 0; turn < TURNS; ++turn) {
+				MoveGenerator generator = generators[i];
+				generator.restart();
+				int best = -1;
+				while (generator.next()) {
+					if (generator.getSwing() > best) {
+						best = generator.getSwing();
+						generator.getMove(move);
+					}
+				}
+				if (best < 0 || games[i].apply(move) != TurnResult.SUCCESS)
+					break;
+				move = new Move();
+			}
+		}
+
+		// Warm up
+		int words = 0;
+		for (MoveGenerator generator : generators) {
+			generator.restart();
+			while (generator.next()) {
+				++words;
+			}
+		}
+
+		long worst = 0;
+		long start = System.nanoTime();
+		for (int round = 0; round < ROUNDS; ++round) {
+			for (MoveGenerator generator : generators) {
+				long boardStart = System.nanoTime();
+				generator.restart();
+				while (generator.next()) {
+					generator.getSwing();
+				}
+				worst = Math.max(worst, System.nanoTime() - boardStart);
+			}
+		}
+		long time = System.nanoTime() - start;
+
+		Log.i(TAG, String.format("%d legal words per board", words / BOARDS));
+		Log.i(TAG, String.format("%.3f ms per board, worst %.3f ms", time
+				/ 1e6 / ROUNDS / BOARDS, worst / 1e6));
+
+	}
+
+}
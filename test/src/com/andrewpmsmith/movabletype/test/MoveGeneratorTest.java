@@ -0,0 +1,98 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+
+import junit.framework.Assert;
+
+public class MoveGeneratorTest extends AndroidTestCase {
+
+	/*
+	 * Play random games and test at every position that exactly the legal
+	 * words are generated, that each can be played, and that no other choice
+	 * of tiles would score more
+	 */
+	public void test_legalMoves() {
+
+		Random r = new Random(5);
+
+		for (int game = 0; game < 10; ++game) {
+
+			GameModel gm = new GameModel(getContext());
+			MoveGenerator generator = new MoveGenerator(gm);
+
+			List<String> boardWords = GameFixtures.boardWords(gm);
+
+			while (gm.getGameState() != GameState.GAME_OVER) {
+
+				Set<String> generated = new HashSet<String>();
+				List<Move> moves = new ArrayList<Move>();
+
+				generator.restart();
+				while (generator.next()) {
+
+					String word = generator.getWord();
+					Assert.assertTrue(generated.add(word));
+					Assert.assertEquals(word, new String(
+							generator.getLetters(), 0, generator.getLength()));
+
+					List<Integer> tiles = new ArrayList<Integer>();
+					for (int i = 0; i < generator.getLength(); ++i) {
+						Assert.assertEquals(word.charAt(i),
+								gm.getLetter(generator.getTile(i)));
+						tiles.add(generator.getTile(i));
+					}
+					Assert.assertEquals(word.length(),
+							new HashSet<Integer>(tiles).size());
+
+					Assert.assertEquals(GameFixtures.swing(gm, tiles),
+							generator.getSwing());
+					for (int i = 0; i < 5; ++i) {
+						Assert.assertTrue(GameFixtures.swing(gm,
+								GameFixtures.randomTiles(gm, word, r))
+								<= generator.getSwing());
+					}
+
+					Move move = new Move();
+					generator.getMove(move);
+					moves.add(move);
+				}
+				Assert.assertEquals(generated.size(), generator.getCount());
+
+				for (String word : boardWords) {
+					boolean legal = word.length() >= 2
+							&& !gm.getPlayedWords().containsPrefix(word);
+					Assert.assertEquals(word, legal, generated.contains(word));
+				}
+
+				if (moves.isEmpty())
+					break;
+
+				for (Move move : moves) {
+					Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+					gm.undo(move);
+				}
+
+				Assert.assertEquals(TurnResult.SUCCESS,
+						gm.apply(moves.get(r.nextInt(moves.size()))));
+			}
+
+			generator.restart();
+			if (gm.getGameState() == GameState.GAME_OVER)
+				Assert.assertFalse(generator.next());
+		}
+
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.andrewpmsmith.movabletype.ai.ComputerPlayer;
+import com.andrewpmsmith.movabletype.ai.EndgameSolver;
+import com.andrewpmsmith.movabletype.ai.MonteCarloSearch;
+import com.andrewpmsmith.movabletype.ai.Search;
+import com.andrewpmsmith.movabletype.model.GameModel;
+
+/*
+ * Times a search of random boards to a fixed depth on one thread and then on
+ * more, up to one per processor, to show how the search scales, counts the
+ * playouts Monte Carlo search makes in the computer's time budget, and how
+ * often endgames of random games are solved in the time the computer gives
+ * them. Results are written to the log under the tag SearchBenchmark.
+ */
+public class SearchBenchmark extends AndroidTestCase {
+
+	private static final String TAG = "SearchBenchmark";
+	private static final int BOARDS = 5;
+	private static final int DEPTH = 2;
+	private static final int NO_TIME_LIMIT = 1000000;
+
+	public void test_scaling() {
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		byte[][] boards = new byte[BOARDS][];
+		for (int i = 0; i < BOARDS; ++i) {
+			boards[i] = new GameModel(getContext()).serialize();
+		}
+
+		// Warm up
+		search(boards[0], 1, executor);
+
+		long serialTime = 0;
+		try {
+			for (int threads = 1; threads <= processors; ++threads) {
+
+				long nodes = 0;
+				long start = System.nanoTime();
+				for (byte[] board : boards) {
+					nodes += search(board, threads, executor);
+				}
+				long time = System.nanoTime() - start;
+
+				if (threads == 1)
+					serialTime = time;
+
+				Log.i(TAG, String.format(
+						"%d threads: %.1f ms per board, %.0f positions/s, "
+								+ "speedup %.2f", threads, time / 1e6
+								/ BOARDS, nodes * 1e9 / time,
+						(double) serialTime / time));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+	public void test_playouts() {
+
+		// Warm up
+		new MonteCarloSearch(new GameModel(getContext()), 0).findMove(
+				ComputerPlayer.DEFAULT_BUDGET_MILLIS, Integer.MAX_VALUE);
+
+		long playouts = 0;
+		long treeSize = 0;
+		long time = 0;
+		for (int i = 0; i < BOARDS; ++i) {
+			MonteCarloSearch search = new MonteCarloSearch(new GameModel(
+					getContext()), i);
+			search.findMove(ComputerPlayer.DEFAULT_BUDGET_MILLIS,
+					Integer.MAX_VALUE);
+
+			playouts += search.getPlayoutCount();
+			treeSize += search.getTreeSize();
+			time += search.getElapsedMillis();
+		}
+
+		Log.i(TAG, String.format(
+				"Monte Carlo: %.0f playouts/s, %d positions in the tree",
+				playouts * 1e3 / time, treeSize / BOARDS));
+
+	}
+
+	public void test_endgame() {
+
+		Random r = new Random(5);
+
+		for (int unplayed = 1; unplayed <= EndgameSolver.MAX_UNPLAYED + 1;
+				++unplayed) {
+
+			int proven = 0;
+			long nodes = 0;
+			long time = 0;
+			for (int i = 0; i < BOARDS; ++i) {
+				GameModel gm = GameFixtures.playToEndgame(getContext(), r,
+						unplayed);
+				EndgameSolver solver = new EndgameSolver(gm);
+				if (solver.solve(ComputerPlayer.DEFAULT_BUDGET_MILLIS / 2))
+					++proven;
+				nodes += solver.getNodeCount();
+				time += solver.getElapsedMillis();
+			}
+
+			Log.i(TAG, String.format(
+					"%d unplayed: %d of %d solved, %.1f ms per board, "
+							+ "%.0f positions/s", unplayed, proven, BOARDS,
+					(double) time / BOARDS, nodes * 1e3 / Math.max(time, 1)));
+		}
+
+	}
+
+	private long search(byte[] board, int threads, ExecutorService executor) {
+
+		GameModel[] copies = new GameModel[threads];
+		for (int i = 0; i < threads; ++i) {
+			copies[i] = GameModel.deserialize(board, getContext());
+		}
+
+		Search search = new Search(copies, executor);
+		search.findMove(NO_TIME_LIMIT, DEPTH);
+		return search.getNodeCount();
+	}
+
+}
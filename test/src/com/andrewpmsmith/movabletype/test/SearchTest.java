@@ -0,0 +1,477 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.ai.ComputerPlayer;
+import com.andrewpmsmith.movabletype.ai.Search;
+import com.andrewpmsmith.movabletype.ai.TranspositionTable;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.Move;
+import com.andrewpmsmith.movabletype.model.Zobrist;
+
+import junit.framework.Assert;
+
+public class SearchTest extends AndroidTestCase {
+
+	private static final int NO_TIME_LIMIT = 1000000;
+
+	/*
+	 * Test that alpha-beta with the transposition table finds the same value
+	 * as a plain minimax search over the same moves, during random games on
+	 * boards with few enough words for the minimax search to be quick
+	 */
+	public void test_matchesMinimax() {
+
+		Random r = new Random(11);
+		int positions = 0;
+
+		for (int game = 0; game < 4; ++game) {
+
+			GameModel gm = sparseGame(r);
+
+			for (int turn = 0; gm.getGameState() != GameState.GAME_OVER; ++turn) {
+
+				List<Move> moves = GameFixtures.legalMoves(gm);
+				if (turn % 4 == 0) {
+
+					int depth = (moves.size() <= 40) ? 3 : 2;
+					byte[] before = gm.serialize();
+
+					Search search = new Search(gm);
+					Move best = search.findMove(NO_TIME_LIMIT, depth);
+
+					// The search stops early once the result is decided
+					if (Math.abs(search.getValue()) < Search.WIN / 2)
+						Assert.assertEquals(depth, search.getDepth());
+					depth = search.getDepth();
+					Assert.assertTrue(Arrays.equals(before,
+							gm.serialize()));
+
+					int root = (gm.getGameState() == GameState.PLAYER1_TURN)
+							? GameModel.PLAYER1 : GameModel.PLAYER2;
+					int expected = minimax(gm, depth, 0, root);
+					Assert.assertEquals(expected, search.getValue());
+
+					// The move returned must be worth what the search said
+					Assert.assertEquals(TurnResult.SUCCESS, gm.apply(best));
+					Assert.assertEquals(expected,
+							-minimax(gm, depth - 1, 1, root));
+					gm.undo(best);
+
+					++positions;
+				}
+
+				gm.apply(moves.get(r.nextInt(moves.size())));
+			}
+		}
+
+		Assert.assertTrue(positions > 0);
+
+	}
+
+	/*
+	 * As above, four moves deep on a board with so few words that the same
+	 * positions are reached by different orders of moves and the game can
+	 * end with both players passing
+	 */
+	public void test_matchesMinimaxDeep() {
+
+		final char[] grid = ("CATSQ" + "ZJVXQ" + "ZJVXQ" + "ZJVXQ" + "ZJVXQ")
+				.toCharArray();
+		final int depth = 4;
+
+		LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = LetterState.UNPLAYED;
+		}
+
+		Random r = new Random(13);
+		GameModel gm = new GameModel(grid, states, GameState.PLAYER1_TURN,
+				getContext());
+
+		while (gm.getGameState() != GameState.GAME_OVER) {
+
+			Search search = new Search(gm);
+			search.findMove(NO_TIME_LIMIT, depth);
+
+			int root = (gm.getGameState() == GameState.PLAYER1_TURN)
+					? GameModel.PLAYER1 : GameModel.PLAYER2;
+			Assert.assertEquals(minimax(gm, search.getDepth(), 0, root),
+					search.getValue());
+
+			List<Move> moves = GameFixtures.legalMoves(gm);
+			gm.apply(moves.get(r.nextInt(moves.size())));
+		}
+
+	}
+
+	/*
+	 * Test that a search on several threads finds the same value as minimax,
+	 * and a move worth that much
+	 */
+	public void test_parallel() {
+
+		final int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads - 1);
+		Random r = new Random(17);
+		int positions = 0;
+
+		try {
+			for (int game = 0; game < 3; ++game) {
+
+				GameModel gm = sparseGame(r);
+
+				for (int turn = 0; turn < 8
+						&& gm.getGameState() != GameState.GAME_OVER; ++turn) {
+
+					List<Move> moves = GameFixtures.legalMoves(gm);
+					if (turn % 4 == 0) {
+
+						GameModel[] copies = new GameModel[threads];
+						for (int i = 0; i < threads; ++i) {
+							copies[i] = GameModel.deserialize(gm.serialize(),
+									getContext());
+						}
+
+						Search search = new Search(copies, executor);
+						Move best = search.findMove(NO_TIME_LIMIT, 2);
+						int depth = search.getDepth();
+						Assert.assertEquals(threads, search.getThreadCount());
+
+						int root = (gm.getGameState() == GameState.PLAYER1_TURN)
+								? GameModel.PLAYER1 : GameModel.PLAYER2;
+						int expected = minimax(gm, depth, 0, root);
+						Assert.assertEquals(expected, search.getValue());
+
+						Assert.assertEquals(TurnResult.SUCCESS, gm.apply(best));
+						Assert.assertEquals(expected,
+								-minimax(gm, depth - 1, 1, root));
+						gm.undo(best);
+
+						// Every copy is back where it started
+						for (GameModel copy : copies) {
+							Assert.assertTrue(Arrays.equals(gm.serialize(),
+									copy.serialize()));
+						}
+
+						++positions;
+					}
+
+					gm.apply(moves.get(r.nextInt(moves.size())));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Assert.assertTrue(positions > 0);
+
+	}
+
+	/*
+	 * Test that a search on one thread always plays the same move, having
+	 * visited the same positions
+	 */
+	public void test_deterministic() {
+
+		GameModel gm = new GameModel(getContext());
+
+		Search first = new Search(gm);
+		Move a = first.findMove(NO_TIME_LIMIT, 2);
+		Search second = new Search(gm);
+		Move b = second.findMove(NO_TIME_LIMIT, 2);
+
+		Assert.assertEquals(first.getNodeCount(), second.getNodeCount());
+		Assert.assertEquals(first.getValue(), second.getValue());
+		Assert.assertEquals(a.getTileMask(), b.getTileMask());
+		Assert.assertEquals(a.getLength(), b.getLength());
+		for (int i = 0; i < a.getLength(); ++i) {
+			Assert.assertEquals(a.getTile(i), b.getTile(i));
+		}
+
+	}
+
+	/*
+	 * Test that results come back as they were stored, and that another
+	 * position sharing the slot isn't mistaken for the one stored
+	 */
+	public void test_transpositionTable() {
+
+		TranspositionTable table = new TranspositionTable(4);
+		long hash = 0x123456789abcdef0L;
+
+		Assert.assertEquals(0, table.probe(hash));
+
+		table.store(hash, 5, -Search.WIN + 3, TranspositionTable.UPPER_BOUND,
+				-1);
+		long result = table.probe(hash);
+		Assert.assertTrue(result != 0);
+		Assert.assertEquals(-Search.WIN + 3,
+				TranspositionTable.getValue(result));
+		Assert.assertEquals(5, TranspositionTable.getDepth(result));
+		Assert.assertEquals(TranspositionTable.UPPER_BOUND,
+				TranspositionTable.getBound(result));
+		Assert.assertEquals(-1, TranspositionTable.getBestMove(result));
+
+		// Same slot, different position
+		long other = hash ^ (1L << 40);
+		Assert.assertEquals(0, table.probe(other));
+
+		// Shallower results don't replace deeper ones for other positions
+		table.store(other, 4, 7, TranspositionTable.EXACT, 1234);
+		Assert.assertEquals(0, table.probe(other));
+		table.store(other, 5, 7, TranspositionTable.EXACT, 1234);
+		result = table.probe(other);
+		Assert.assertEquals(7, TranspositionTable.getValue(result));
+		Assert.assertEquals(1234, TranspositionTable.getBestMove(result));
+		Assert.assertEquals(TranspositionTable.EXACT,
+				TranspositionTable.getBound(result));
+		Assert.assertEquals(0, table.probe(hash));
+
+		table.clear();
+		Assert.assertEquals(0, table.probe(other));
+
+	}
+
+	/*
+	 * Test that a stored result only cuts off or narrows a search as deep as
+	 * the one that found it, and only on the side its bound allows
+	 */
+	public void test_transpositionBounds() {
+
+		TranspositionTable table = new TranspositionTable(4);
+
+		Assert.assertFalse(TranspositionTable.isCutoff(0, 1, -10, 10));
+		Assert.assertEquals(-10, TranspositionTable.narrowAlpha(0, 1, -10));
+		Assert.assertEquals(-1, TranspositionTable.getBestMove(0));
+
+		table.store(1, 3, 5, TranspositionTable.LOWER_BOUND, 0);
+		long lower = table.probe(1);
+		Assert.assertTrue(TranspositionTable.isCutoff(lower, 3, -10, 5));
+		Assert.assertFalse(TranspositionTable.isCutoff(lower, 3, -10, 10));
+		Assert.assertFalse(TranspositionTable.isCutoff(lower, 4, -10, 5));
+		Assert.assertEquals(5, TranspositionTable.narrowAlpha(lower, 3, -10));
+		Assert.assertEquals(10, TranspositionTable.narrowBeta(lower, 3, 10));
+
+		table.store(2, 3, -5, TranspositionTable.UPPER_BOUND, 0);
+		long upper = table.probe(2);
+		Assert.assertTrue(TranspositionTable.isCutoff(upper, 3, -5, 10));
+		Assert.assertFalse(TranspositionTable.isCutoff(upper, 3, -10, 10));
+		Assert.assertEquals(-10, TranspositionTable.narrowAlpha(upper, 3, -10));
+		Assert.assertEquals(-5, TranspositionTable.narrowBeta(upper, 3, 10));
+		Assert.assertEquals(10, TranspositionTable.narrowBeta(upper, 4, 10));
+
+		Assert.assertEquals(TranspositionTable.UPPER_BOUND,
+				TranspositionTable.boundOf(-10, -10, 10));
+		Assert.assertEquals(TranspositionTable.LOWER_BOUND,
+				TranspositionTable.boundOf(10, -10, 10));
+		Assert.assertEquals(TranspositionTable.EXACT,
+				TranspositionTable.boundOf(0, -10, 10));
+
+	}
+
+	/*
+	 * Test that the search stops close to its time budget and still returns
+	 * a move that can be played
+	 */
+	public void test_timeBudget() {
+
+		GameModel gm = new GameModel(getContext());
+		Search search = new Search(gm);
+
+		long start = System.nanoTime();
+		Move move = search.findMove(200, Integer.MAX_VALUE);
+		long elapsed = (System.nanoTime() - start) / 1000000;
+
+		Assert.assertTrue("took " + elapsed + " ms", elapsed < 1000);
+		Assert.assertFalse(move.isPass());
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+
+		// With no time at all there is still a move
+		move = search.findMove(0, Integer.MAX_VALUE);
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+
+	}
+
+	/*
+	 * Test that an abort from another thread isn't forgotten when the
+	 * search starts after it, and that a move is still returned
+	 */
+	public void test_abortBeforeSearch() {
+
+		GameModel gm = new GameModel(getContext());
+		Search search = new Search(gm);
+		search.abort();
+
+		Move move = search.findMove(NO_TIME_LIMIT, Integer.MAX_VALUE);
+		Assert.assertEquals(0, search.getDepth());
+		Assert.assertTrue(search.getElapsedMillis() < 1000);
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+
+	}
+
+	/*
+	 * Test that a position hashes the same however it was reached, and that
+	 * the hash follows the tiles, the words, the turn and passes
+	 */
+	public void test_zobrist() {
+
+		GameModel gm = new GameModel(getContext());
+		List<Move> moves = GameFixtures.legalMoves(gm);
+
+		// Two words that don't share a tile, where neither starts the other
+		Move a = null;
+		Move b = null;
+		for (Move m : moves) {
+			if (m.isPass())
+				continue;
+			if (a == null) {
+				a = m;
+			} else if ((m.getTileMask() & a.getTileMask()) == 0) {
+				gm.apply(a);
+				boolean independent = gm.apply(m) == TurnResult.SUCCESS;
+				if (independent)
+					gm.undo(m);
+				gm.undo(a);
+				if (independent) {
+					b = m;
+					break;
+				}
+			}
+		}
+		Assert.assertNotNull(b);
+
+		long start = Zobrist.hash(gm);
+		Move pass = new Move();
+
+		// A then pass then B, against B then pass then A
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(a));
+		long afterA = Zobrist.hash(gm);
+		Assert.assertTrue(afterA != start);
+		gm.apply(pass);
+		Assert.assertTrue(Zobrist.hash(gm) != afterA);
+		gm.apply(b);
+		long first = Zobrist.hash(gm);
+		gm.undo(b);
+		gm.undo(pass);
+		gm.undo(a);
+		Assert.assertEquals(start, Zobrist.hash(gm));
+
+		gm.apply(b);
+		gm.apply(pass);
+		gm.apply(a);
+		Assert.assertEquals(first, Zobrist.hash(gm));
+
+		char[] ab = { 'A', 'B' };
+		char[] ba = { 'B', 'A' };
+		Assert.assertTrue(Zobrist.word(ab, 2) != Zobrist.word(ba, 2));
+		Assert.assertTrue(Zobrist.word(ab, 1) != Zobrist.word(ab, 2));
+
+	}
+
+	/*
+	 * Test that the computer's move arrives on the result executor, and that
+	 * a cancelled move never arrives
+	 */
+	public void test_computerPlayer() throws InterruptedException {
+
+		final BlockingQueue<Move> results = new LinkedBlockingQueue<Move>();
+		Executor direct = new Executor() {
+
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+
+		};
+		ComputerPlayer.MoveCallback callback = new ComputerPlayer.MoveCallback() {
+
+			@Override
+			public void onMoveChosen(Move move) {
+				results.add(move);
+			}
+
+		};
+
+		GameModel gm = new GameModel(getContext(), true);
+		Assert.assertTrue(gm.hasComputerOpponent());
+		ComputerPlayer computer = new ComputerPlayer(getContext(), 100);
+
+		computer.play(gm, callback, direct);
+		Move move = results.poll(10, TimeUnit.SECONDS);
+		Assert.assertNotNull(move);
+		Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+
+		computer.play(gm, callback, direct);
+		computer.cancel();
+		Assert.assertNull(results.poll(1, TimeUnit.SECONDS));
+
+		GameModel copy = GameModel.deserialize(gm.serialize(), getContext());
+		Assert.assertTrue(copy.hasComputerOpponent());
+
+	}
+
+	/*
+	 * A new game on a board of mostly unusable letters, with between 20 and
+	 * 200 words to play
+	 */
+	private GameModel sparseGame(Random r) {
+
+		final String letters = "AEIOURSTLNCDPMHG";
+		final String filler = "QZJVX";
+		final int lettersUsed = 8;
+
+		LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = LetterState.UNPLAYED;
+		}
+
+		while (true) {
+			char[] grid = new char[GameModel.GRID_ITEMS];
+			for (int i = 0; i < grid.length; ++i) {
+				grid[i] = filler.charAt(i % filler.length());
+			}
+			for (int i = 0; i < lettersUsed; ++i) {
+				grid[r.nextInt(grid.length)] = letters.charAt(r
+						.nextInt(letters.length()));
+			}
+
+			GameModel gm = new GameModel(grid, states,
+					GameState.PLAYER1_TURN, getContext());
+			int moves = GameFixtures.legalMoves(gm).size();
+			if (moves >= 20 && moves <= 200)
+				return gm;
+		}
+	}
+
+	private int minimax(GameModel gm, int depth, int ply, int rootPlayer) {
+
+		if (depth == 0 || gm.getGameState() == GameState.GAME_OVER) {
+			int player = (ply % 2 == 0) ? rootPlayer : 1 - rootPlayer;
+			return Search.evaluate(gm, player, ply);
+		}
+
+		int best = Integer.MIN_VALUE;
+		for (Move move : GameFixtures.legalMoves(gm)) {
+			Assert.assertEquals(TurnResult.SUCCESS, gm.apply(move));
+			best = Math.max(best, -minimax(gm, depth - 1, ply + 1, rootPlayer));
+			gm.undo(move);
+		}
+
+		return best;
+	}
+
+}
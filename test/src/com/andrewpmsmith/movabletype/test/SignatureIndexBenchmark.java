@@ -0,0 +1,105 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.andrewpmsmith.movabletype.model.BoardGenerator;
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.SignatureIndex;
+import com.andrewpmsmith.movabletype.model.WordList;
+
+/*
+ * Times a scan of the whole signature index for the words that can be spelt
+ * on a random board, and checks the results against a walk of the
+ * dictionary, then times the boards dealt for new games, which are checked
+ * with the index. Results are written to the log under the tag
+ * SignatureIndexBenchmark.
+ */
+public class SignatureIndexBenchmark extends AndroidTestCase {
+	
+	private static final String TAG = "SignatureIndexBenchmark";
+	private static final int BOARDS = 200;
+	private static final int TILES = 25;
+	
+	public void test_scan() {
+		
+		Dawg dictionary = WordList.getDictionary(mContext);
+		
+		long start = System.nanoTime();
+		SignatureIndex index = new SignatureIndex(dictionary.getWords());
+		long buildTime = System.nanoTime() - start;
+		
+		Assert.assertEquals(dictionary.getWordCount(), index.getWordCount());
+		
+		Random random = new Random(0);
+		int[][] boards = new int[BOARDS][26];
+		for (int[] board : boards) {
+			for (int i = 0; i < TILES; ++i) {
+				++board[random.nextInt(26)];
+			}
+		}
+		
+		// Warm up, and check the index agrees with the dictionary
+		for (int[] board : boards) {
+			List<String> expected = dictionary.findFormableWords(board);
+			Assert.assertEquals(expected, index.findFormableWords(board));
+		}
+		
+		int[] matches = new int[index.getWordCount()];
+		int found = 0;
+		start = System.nanoTime();
+		for (int[] board : boards) {
+			found += index.findFormable(board, matches);
+		}
+		long scanTime = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		for (int[] board : boards) {
+			dictionary.findFormableWords(board);
+		}
+		long walkTime = System.nanoTime() - start;
+		
+		Log.i(TAG, String.format("built %d words (%d KB) in %d ms",
+				index.getWordCount(), index.getSizeInBytes() / 1024,
+				buildTime / 1000000));
+		Log.i(TAG, String.format("scan: %.3f ms per board, %d words per board",
+				scanTime / 1e6 / BOARDS, found / BOARDS));
+		Log.i(TAG, String.format("dictionary walk: %.3f ms per board",
+				walkTime / 1e6 / BOARDS));
+		
+	}
+	
+	public void test_boardGenerator() {
+		
+		SignatureIndex index = WordList.getSignatureIndex(mContext);
+		BoardGenerator generator = new BoardGenerator(index);
+		Random random = new Random(0);
+		
+		// Warm up
+		generator.generate(random);
+		
+		long worst = 0;
+		int attempts = 0;
+		int words = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < BOARDS; ++i) {
+			long boardStart = System.nanoTime();
+			char[] grid = generator.generate(random);
+			worst = Math.max(worst, System.nanoTime() - boardStart);
+			attempts += generator.getAttempts();
+			words += generator.countWords(grid);
+		}
+		long time = System.nanoTime() - start;
+		
+		Log.i(TAG, String.format("boards: %.3f ms per board, worst %.3f ms, "
+				+ "%.2f grids dealt per board, %d words per board",
+				time / 1e6 / BOARDS, worst / 1e6, (double) attempts / BOARDS,
+				words / BOARDS));
+		
+	}
+	
+}
@@ -0,0 +1,68 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.andrewpmsmith.movabletype.model.SignatureIndex;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class SignatureIndexTest extends TestCase {
+	
+	private int[] counts(String letters) {
+		int[] letterCounts = new int[26];
+		for (char c : letters.toCharArray()) {
+			++letterCounts[c - 'A'];
+		}
+		return letterCounts;
+	}
+	
+	/*
+	 * Test that exactly the words that fit within the letters are found
+	 */
+	public void test_functional() {
+		
+		SignatureIndex index = new SignatureIndex(Arrays.asList("CAT", "CATS",
+				"DOG", "DOGS", "DOT", "DOTS", "TOT", "ZYZZYVA"));
+		
+		Assert.assertEquals(8, index.getWordCount());
+		Assert.assertEquals("DOGS", index.getWord(3));
+		
+		Assert.assertEquals(Arrays.asList("DOG", "DOGS", "DOT", "DOTS"),
+				index.findFormableWords(counts("STOGDC")));
+		Assert.assertEquals(Arrays.asList("CAT", "CATS", "DOG", "DOGS", "DOT",
+				"DOTS", "TOT"), index.findFormableWords(counts("STOGDCAT")));
+		
+		// Letters from both halves of the packed counts
+		Assert.assertEquals(Arrays.asList("ZYZZYVA"),
+				index.findFormableWords(counts("ZZZYYVA")));
+		Assert.assertEquals(0, index.countFormableWords(counts("ZZYYVA")));
+		
+		Assert.assertEquals(0, index.countFormableWords(new int[26]));
+		
+	}
+	
+	/*
+	 * Test that counts beyond what fits in a nibble are handled
+	 */
+	public void test_largeCounts() {
+		
+		SignatureIndex index = new SignatureIndex(Arrays.asList("AA",
+				"AAAAAAA", "AAAAAAAA", "BOOK", "book", "B0OK"));
+		
+		// Words that use a letter too often, or that aren't A to Z, are
+		// skipped
+		Assert.assertEquals(3, index.getWordCount());
+		
+		int[] letterCounts = new int[26];
+		letterCounts[0] = 25;
+		List<String> words = index.findFormableWords(letterCounts);
+		Assert.assertEquals(Arrays.asList("AA", "AAAAAAA"), words);
+		
+		letterCounts[0] = 6;
+		Assert.assertEquals(1, index.countFormableWords(letterCounts));
+		
+	}
+	
+}
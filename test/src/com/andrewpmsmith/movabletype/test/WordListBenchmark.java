@@ -0,0 +1,105 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Locale;
+
+import junit.framework.Assert;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.andrewpmsmith.movabletype.R;
+import com.andrewpmsmith.movabletype.model.WordList;
+
+/*
+ * Compares the rate at which the word table can be populated by the original
+ * row by row loader and by WordList's bulk loader. Results are written to the
+ * log under the tag WordListBenchmark.
+ */
+public class WordListBenchmark extends AndroidTestCase {
+	
+	private static final String TAG = "WordListBenchmark";
+	private static final String LEGACY_TABLE = "words_legacy";
+	
+	public void test_bulkLoad() throws IOException {
+		
+		WordList wl = new WordList(mContext);
+		SQLiteDatabase db = wl.getWritableDatabase();
+		
+		// Before: one ContentValues, regex and insert per word
+		db.execSQL("DROP TABLE IF EXISTS " + LEGACY_TABLE);
+		db.execSQL("CREATE TABLE " + LEGACY_TABLE + "(word TEXT PRIMARY KEY)");
+		
+		long start = System.nanoTime();
+		legacyAddWords(db);
+		long legacyTime = System.nanoTime() - start;
+		int legacyCount = countRows(db, LEGACY_TABLE);
+		
+		db.execSQL("DROP TABLE " + LEGACY_TABLE);
+		
+		// After: WordList's bulk loader
+		start = System.nanoTime();
+		wl.reCreate();
+		long bulkTime = System.nanoTime() - start;
+		int bulkCount = countRows(db, "words");
+		
+		Log.i(TAG, String.format("row by row: %d words in %d ms (%.0f words/s)",
+				legacyCount, legacyTime / 1000000,
+				legacyCount * 1e9 / legacyTime));
+		Log.i(TAG, String.format("bulk: %d words in %d ms (%.0f words/s)",
+				bulkCount, bulkTime / 1000000, bulkCount * 1e9 / bulkTime));
+		
+		Assert.assertEquals(legacyCount, bulkCount);
+		
+	}
+	
+	/*
+	 * The loader as it was before the bulk import was added
+	 */
+	private void legacyAddWords(SQLiteDatabase db) throws IOException {
+		
+		InputStream is = mContext.getResources().openRawResource(
+				R.raw.wordlist);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+		
+		db.beginTransaction();
+		
+		String line;
+		while ((line = reader.readLine()) != null) {
+			
+			if (line.length() < 2)
+				continue;
+			String word = line.toUpperCase(Locale.US);
+			if (!word.matches("^[A-Z]+$"))
+				continue;
+			
+			ContentValues values = new ContentValues();
+			values.put("word", word);
+			try {
+				db.insert(LEGACY_TABLE, null, values);
+			} catch (SQLiteConstraintException e) {
+				// Duplicate word
+			}
+		}
+		
+		db.setTransactionSuccessful();
+		db.endTransaction();
+		reader.close();
+		
+	}
+	
+	private int countRows(SQLiteDatabase db, String table) {
+		Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + table, null);
+		c.moveToFirst();
+		int count = c.getInt(0);
+		c.close();
+		return count;
+	}
+
+}
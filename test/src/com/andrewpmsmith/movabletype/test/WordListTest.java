@@ -3,7 +3,9 @@ package com.andrewpmsmith.movabletype.test;
 import junit.framework.Assert;
 import android.test.AndroidTestCase;
 
+import com.andrewpmsmith.movabletype.model.BloomFilter;
 import com.andrewpmsmith.movabletype.model.WordList;
+import com.andrewpmsmith.movabletype.model.WordLookup;
 
 public class WordListTest extends AndroidTestCase {
 	
@@ -44,4 +46,63 @@ public class WordListTest extends AndroidTestCase {
 		Assert.assertFalse(wl.wordInDictionary("; DROP TABLE words;"));
 	}
 
+	/*
+	 * Test lookups made directly against the word table
+	 */
+	public void test_databaseLookup() {
+		WordList wl = new WordList(mContext);
+		wl.reCreate();
+		
+		WordLookup lookup = WordList.getLookup(mContext);
+		Assert.assertNotNull(lookup);
+		Assert.assertSame(lookup, WordList.getLookup(mContext));
+		
+		lookup.resetStatistics();
+		
+		Assert.assertTrue(lookup.contains("AARDVARK"));
+		Assert.assertTrue(lookup.contains("ZOO"));
+		
+		Assert.assertFalse(lookup.contains("zoo"));
+		Assert.assertFalse(lookup.contains("A"));
+		Assert.assertFalse(lookup.contains("ABCD"));
+		Assert.assertFalse(lookup.contains("LET'S"));
+		Assert.assertFalse(lookup.contains(null));
+		Assert.assertFalse(lookup.contains(""));
+		Assert.assertFalse(lookup.contains("; DROP TABLE words;"));
+		
+		// Only AARDVARK, ZOO, A and ABCD are made of capital letters, so
+		// the rest are rejected without querying the table
+		Assert.assertEquals(4, lookup.getLookupCount());
+		Assert.assertTrue(lookup.getMeanLatencyMicros() > 0);
+		Assert.assertTrue(
+				lookup.getMaxLatencyMicros() >= lookup.getMeanLatencyMicros());
+	}
+
+	/*
+	 * Test that a Bloom filter in front of the table never hides a real word
+	 */
+	public void test_filteredLookup() {
+		WordLookup lookup = WordList.getLookup(mContext);
+		
+		BloomFilter filter = WordList.loadLookupFilter(mContext, 0.01);
+		Assert.assertNotNull(filter);
+		Assert.assertTrue(filter.getSizeInBytes() > 0);
+		
+		lookup.setFilter(filter);
+		lookup.resetStatistics();
+		try {
+			Assert.assertTrue(lookup.contains("AARDVARK"));
+			Assert.assertTrue(lookup.contains("JOKE"));
+			Assert.assertTrue(lookup.contains("ZOO"));
+			Assert.assertFalse(lookup.contains("ABCD"));
+			Assert.assertFalse(lookup.contains("QQQQ"));
+			
+			Assert.assertEquals(5, lookup.getLookupCount());
+			Assert.assertEquals(2, lookup.getFilterRejectionCount()
+					+ lookup.getFilterFalsePositiveCount());
+		} finally {
+			lookup.setFilter(null);
+		}
+	}
+
 }
@@ -0,0 +1,144 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.andrewpmsmith.movabletype.model.Serializer;
+import com.andrewpmsmith.movabletype.model.WordList;
+import com.andrewpmsmith.movabletype.model.WordTrie;
+
+/*
+ * Compares the size of a saved WordTrie, and the time taken to save and
+ * restore it, between the original object graph format and the compact
+ * format. Results are written to the log under the tag WordTrieBenchmark.
+ */
+public class WordTrieBenchmark extends AndroidTestCase {
+	
+	private static final String TAG = "WordTrieBenchmark";
+	private static final int ITERATIONS = 20;
+	
+	/*
+	 * The trie as it was before nodes were packed into arrays
+	 */
+	private static class LegacyTrie implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final LegacyNode mRoot = new LegacyNode();
+		private int mWordIndex = 0;
+		
+		private void add(String word) {
+			LegacyNode node = mRoot;
+			for (int i = 0; i < word.length(); ++i) {
+				if (node.mLetters == null)
+					node.mLetters = new HashMap<Integer, LegacyNode>();
+				int index = word.charAt(i) - 'A';
+				LegacyNode next = node.mLetters.get(index);
+				if (next == null) {
+					next = new LegacyNode();
+					node.mLetters.put(index, next);
+				}
+				node = next;
+			}
+			node.mIndex = mWordIndex++;
+		}
+		
+	}
+	
+	private static class LegacyNode implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private int mIndex = -1;
+		private HashMap<Integer, LegacyNode> mLetters;
+		
+	}
+	
+	public void test_serialization() {
+		
+		List<String> dictionary = WordList.getDictionary(mContext).getWords();
+		
+		// A game's worth of played words, a board's words, and every word
+		Random random = new Random(0);
+		int[] letterCounts = new int[26];
+		for (int i = 0; i < 25; ++i) {
+			++letterCounts[random.nextInt(26)];
+		}
+		List<String> boardWords = WordList.getSignatureIndex(mContext)
+				.findFormableWords(letterCounts);
+		
+		String[] played = new String[20];
+		for (int i = 0; i < played.length; ++i) {
+			played[i] = boardWords.get(random.nextInt(boardWords.size()));
+		}
+		
+		compare("played words", Arrays.asList(played));
+		compare("board words", boardWords);
+		compare("dictionary", dictionary);
+		
+	}
+	
+	private void compare(String name, List<String> words) {
+		
+		LegacyTrie legacy = new LegacyTrie();
+		WordTrie trie = new WordTrie();
+		for (String word : words) {
+			legacy.add(word);
+			trie.add(word);
+		}
+		
+		// Warm up
+		byte[] legacyBytes = Serializer.serialize(legacy);
+		Serializer.deserialize(legacyBytes);
+		byte[] compactBytes = trie.serialize();
+		WordTrie.deserialize(compactBytes);
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; ++i) {
+			legacyBytes = Serializer.serialize(legacy);
+		}
+		long legacyEncode = (System.nanoTime() - start) / ITERATIONS;
+		
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; ++i) {
+			Serializer.deserialize(legacyBytes);
+		}
+		long legacyDecode = (System.nanoTime() - start) / ITERATIONS;
+		
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; ++i) {
+			compactBytes = trie.serialize();
+		}
+		long compactEncode = (System.nanoTime() - start) / ITERATIONS;
+		
+		WordTrie restored = null;
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; ++i) {
+			restored = WordTrie.deserialize(compactBytes);
+		}
+		long compactDecode = (System.nanoTime() - start) / ITERATIONS;
+		
+		for (String word : words) {
+			Assert.assertTrue(restored.contains(word));
+		}
+		Assert.assertEquals(trie.getWordCount(), restored.getWordCount());
+		
+		Log.i(TAG, String.format(
+				"%s (%d words): object graph %d bytes, encode %.2f ms, decode %.2f ms",
+				name, trie.getWordCount(), legacyBytes.length,
+				legacyEncode / 1e6, legacyDecode / 1e6));
+		Log.i(TAG, String.format(
+				"%s (%d words): compact %d bytes, encode %.2f ms, decode %.2f ms",
+				name, trie.getWordCount(), compactBytes.length,
+				compactEncode / 1e6, compactDecode / 1e6));
+		
+	}
+	
+}
@@ -1,5 +1,9 @@
 package com.andrewpmsmith.movabletype.test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import com.andrewpmsmith.movabletype.model.WordTrie;
 
 import junit.framework.Assert;
@@ -7,6 +11,34 @@ import junit.framework.TestCase;
 
 public class WordTrieTest extends TestCase {
 	
+	// A trie holding WORD, WORDS and AT, serialized before nodes were packed
+	// into arrays
+	private static final String LEGACY_TRIE =
+			"aced00057372002c636f6d2e616e64726577706d736d6974682e6d6f7661626c" +
+			"65747970652e6d6f64656c2e576f726454726965000000000000000102000249" +
+			"000a6d576f7264496e6465784c00056d526f6f747400334c636f6d2f616e6472" +
+			"6577706d736d6974682f6d6f7661626c65747970652f6d6f64656c2f576f7264" +
+			"54726965244e6f64653b78700000000373720031636f6d2e616e64726577706d" +
+			"736d6974682e6d6f7661626c65747970652e6d6f64656c2e576f726454726965" +
+			"244e6f646500000000000000010200034900066d496e6465784c00086d4c6574" +
+			"746572737400134c6a6176612f7574696c2f486173684d61703b4c0006746869" +
+			"73243074002e4c636f6d2f616e64726577706d736d6974682f6d6f7661626c65" +
+			"747970652f6d6f64656c2f576f7264547269653b7870ffffffff737200116a61" +
+			"76612e7574696c2e486173684d61700507dac1c31660d103000246000a6c6f61" +
+			"64466163746f724900097468726573686f6c6478703f4000000000000c770800" +
+			"00001000000002737200116a6176612e6c616e672e496e746567657212e2a0a4" +
+			"f781873802000149000576616c7565787200106a6176612e6c616e672e4e756d" +
+			"62657286ac951d0b94e08b0200007870000000007371007e0003ffffffff7371" +
+			"007e00073f4000000000000c770800000010000000017371007e000900000013" +
+			"7371007e0003000000027071007e00027871007e00027371007e000900000016" +
+			"7371007e0003ffffffff7371007e00073f4000000000000c7708000000100000" +
+			"00017371007e00090000000e7371007e0003ffffffff7371007e00073f400000" +
+			"0000000c770800000010000000017371007e0009000000117371007e0003ffff" +
+			"ffff7371007e00073f4000000000000c770800000010000000017371007e0009" +
+			"000000037371007e0003000000007371007e00073f4000000000000c77080000" +
+			"0010000000017371007e0009000000127371007e0003000000017071007e0002" +
+			"7871007e00027871007e00027871007e00027871007e00027871007e0002";
+	
 	/*
 	 * Test class's functionality and error handling
 	 */
@@ -175,5 +207,406 @@ public class WordTrieTest extends TestCase {
 		Assert.assertTrue(n.contains("WORD"));
 		
 	}
+	
+	/*
+	 * Test that the compact format round trips words that share prefixes,
+	 * long words and word indexes, and that bad input is rejected
+	 */
+	public void test_compactSerialization() {
+		
+		final String longString =
+				"LONGLONGLONGLONGLONGLONGLONGLONGLONGLONGLONGLONGLONGLONGLONG";
+		final String[] words = { "WORDS", "WORD", "A", "AT", "ATE", "ZOO",
+				longString, "WORK", "WORDY" };
+		
+		WordTrie wt = new WordTrie();
+		for (String word : words) {
+			wt.add(word);
+		}
+		wt.add("WORD");
+		
+		byte[] s = wt.serialize();
+		WordTrie n = WordTrie.deserialize(s);
+		
+		Assert.assertNotNull(n);
+		Assert.assertEquals(words.length, n.getWordCount());
+		Assert.assertEquals(wt.getNodeCount(), n.getNodeCount());
+		for (String word : words) {
+			Assert.assertTrue(word, n.contains(word));
+		}
+		Assert.assertFalse(n.contains("WOR"));
+		Assert.assertFalse(n.contains("LONG"));
+		Assert.assertTrue(n.containsPrefix("LONGLONG"));
+		
+		// The next index carries on from where the original left off
+		Assert.assertEquals(wt.add("NEW"), n.add("NEW"));
+		
+		// An empty trie
+		n = WordTrie.deserialize(new WordTrie().serialize());
+		Assert.assertNotNull(n);
+		Assert.assertEquals(0, n.getWordCount());
+		Assert.assertTrue(n.containsPrefix(""));
+		
+		// Truncated and garbage input
+		byte[] truncated = new byte[s.length - 3];
+		System.arraycopy(s, 0, truncated, 0, truncated.length);
+		Assert.assertNull(WordTrie.deserialize(truncated));
+		Assert.assertNull(WordTrie.deserialize(new byte[] { 1, 2, 3, 4, 5 }));
+		
+	}
+	
+	/*
+	 * Test that tries saved in the original format can still be read
+	 */
+	public void test_legacySerialization() {
+		
+		byte[] s = new byte[LEGACY_TRIE.length() / 2];
+		for (int i = 0; i < s.length; ++i) {
+			s[i] = (byte) Integer.parseInt(
+					LEGACY_TRIE.substring(i * 2, i * 2 + 2), 16);
+		}
+		
+		WordTrie n = WordTrie.deserialize(s);
+		
+		Assert.assertNotNull(n);
+		Assert.assertTrue(n.contains("WORD"));
+		Assert.assertTrue(n.contains("WORDS"));
+		Assert.assertTrue(n.contains("AT"));
+		Assert.assertFalse(n.contains("WOR"));
+		Assert.assertTrue(n.containsPrefix("WOR"));
+		Assert.assertFalse(n.containsPrefix("B"));
+		
+		// Words added after loading get fresh indexes
+		Assert.assertEquals(3, n.add("WORM"));
+		Assert.assertTrue(n.contains("WORM"));
+		Assert.assertTrue(n.contains("WORD"));
+		
+	}
+	
+	/*
+	 * Test that the node count and memory footprint are reported
+	 */
+	public void test_footprint() {
+		
+		WordTrie wt = new WordTrie();
+		Assert.assertEquals(1, wt.getNodeCount());
+		
+		wt.add("CAT");
+		wt.add("CATS");
+		wt.add("COT");
+		wt.add("CAT");
+		
+		// Root, C, A, T, S, O, T
+		Assert.assertEquals(7, wt.getNodeCount());
+		Assert.assertTrue(wt.getSizeInBytes() >= 7 * 13);
+		
+	}
+	
+	/*
+	 * Test that a cursor tracks words and prefixes as letters are pushed and
+	 * popped, including after it has left the trie
+	 */
+	public void test_cursor() {
+		
+		WordTrie wt = new WordTrie();
+		wt.add("CAT");
+		wt.add("CATS");
+		wt.add("COT");
+		
+		WordTrie.Cursor c = wt.newCursor();
+		Assert.assertTrue(c.isPrefix());
+		Assert.assertFalse(c.isWord());
+		Assert.assertEquals(0, c.getLength());
+		
+		Assert.assertTrue(c.push('C'));
+		Assert.assertTrue(c.push('A'));
+		Assert.assertTrue(c.isPrefix());
+		Assert.assertFalse(c.isWord());
+		Assert.assertTrue(c.push('T'));
+		Assert.assertTrue(c.isWord());
+		Assert.assertTrue(c.push('S'));
+		Assert.assertTrue(c.isWord());
+		
+		// Leave the trie and come back
+		Assert.assertFalse(c.push('X'));
+		Assert.assertFalse(c.push('Y'));
+		Assert.assertFalse(c.isPrefix());
+		Assert.assertFalse(c.isWord());
+		Assert.assertEquals(6, c.getLength());
+		c.pop();
+		Assert.assertFalse(c.isPrefix());
+		c.pop();
+		Assert.assertTrue(c.isPrefix());
+		Assert.assertTrue(c.isWord());
+		
+		c.pop();
+		c.pop();
+		c.pop();
+		Assert.assertFalse(c.isWord());
+		Assert.assertEquals(1, c.getLength());
+		Assert.assertTrue(c.push('O'));
+		Assert.assertTrue(c.push('T'));
+		Assert.assertTrue(c.isWord());
+		
+		// Invalid characters never match
+		Assert.assertFalse(c.push('a'));
+		Assert.assertFalse(c.isPrefix());
+		
+		c.reset();
+		Assert.assertEquals(0, c.getLength());
+		Assert.assertTrue(c.isPrefix());
+		c.pop();
+		Assert.assertEquals(0, c.getLength());
+		
+	}
+	
+	/*
+	 * Test that a cursor agrees with contains(..) and containsPrefix(..) for
+	 * words longer than its initial stack
+	 */
+	public void test_cursorLoad() {
+		
+		WordTrie wt = new WordTrie();
+		
+		final int TEST_LIMIT = 500;
+		for (int i=0; i<TEST_LIMIT; ++i) {
+			wt.add("WORD" + characterSequence(i * 7));
+		}
+		
+		WordTrie.Cursor c = wt.newCursor();
+		for (int i=0; i<TEST_LIMIT * 7; ++i) {
+			String word = "WORD" + characterSequence(i);
+			c.reset();
+			for (int j=0; j<word.length(); ++j) {
+				c.push(word.charAt(j));
+			}
+			Assert.assertEquals(wt.contains(word), c.isWord());
+			Assert.assertEquals(wt.containsPrefix(word), c.isPrefix());
+		}
+		
+	}
+	
+	private List<String> collect(WordTrie.WordIterator it) {
+		List<String> words = new ArrayList<String>();
+		while (it.next()) {
+			words.add(new String(it.getLetters(), 0, it.getLength()));
+		}
+		return words;
+	}
+	
+	private int[] counts(String letters) {
+		int[] letterCounts = new int[26];
+		for (char c : letters.toCharArray()) {
+			++letterCounts[c - 'A'];
+		}
+		return letterCounts;
+	}
+	
+	/*
+	 * Test iterating over all words, words with a prefix, words that fit
+	 * within a set of letters, and stopping at a limit
+	 */
+	public void test_iterateWords() {
+		
+		WordTrie wt = new WordTrie();
+		for (String word : new String[] { "TOTS", "CAT", "CATS", "COT", "TOT",
+				"DOG", "CATCH" }) {
+			wt.add(word);
+		}
+		
+		Assert.assertEquals(Arrays.asList("CAT", "CATCH", "CATS", "COT", "DOG",
+				"TOT", "TOTS"), collect(wt.iterateWords()));
+		
+		Assert.assertEquals(Arrays.asList("CAT", "CATCH", "CATS"),
+				collect(wt.iterateWords("CAT", null, WordTrie.NO_LIMIT)));
+		Assert.assertEquals(Arrays.asList("CAT", "CATCH", "CATS", "COT"),
+				collect(wt.iterateWords("C", null, WordTrie.NO_LIMIT)));
+		Assert.assertTrue(collect(wt.iterateWords("X", null,
+				WordTrie.NO_LIMIT)).isEmpty());
+		Assert.assertTrue(collect(wt.iterateWords("CATSS", null,
+				WordTrie.NO_LIMIT)).isEmpty());
+		Assert.assertTrue(collect(wt.iterateWords("c", null,
+				WordTrie.NO_LIMIT)).isEmpty());
+		
+		// Letters are used up by the prefix as well as the rest of the word
+		Assert.assertEquals(Arrays.asList("CAT", "CATS", "COT", "TOT", "TOTS"),
+				collect(wt.iterateWords(null, counts("CATSOT"), WordTrie.NO_LIMIT)));
+		Assert.assertEquals(Arrays.asList("TOT", "TOTS"),
+				collect(wt.iterateWords("T", counts("CATSOT"), WordTrie.NO_LIMIT)));
+		Assert.assertTrue(collect(wt.iterateWords("TOT", counts("TOS"),
+				WordTrie.NO_LIMIT)).isEmpty());
+		
+		WordTrie.WordIterator it = wt.iterateWords(null, null, 2);
+		Assert.assertEquals(Arrays.asList("CAT", "CATCH"), collect(it));
+		Assert.assertEquals(2, it.getCount());
+		Assert.assertFalse(it.next());
+		
+		// Restarting reuses the iterator
+		it.restart("T", null, WordTrie.NO_LIMIT);
+		Assert.assertTrue(it.next());
+		Assert.assertEquals("TOT", it.getWord());
+		Assert.assertTrue(it.next());
+		Assert.assertEquals("TOTS", it.getWord());
+		Assert.assertFalse(it.next());
+		
+		Assert.assertFalse(new WordTrie().iterateWords().next());
+		
+	}
+	
+	/*
+	 * Test that iteration returns every word added under load, including
+	 * words longer than the iterator's initial buffer
+	 */
+	public void test_iterateWordsLoad() {
+		
+		WordTrie wt = new WordTrie();
+		
+		final int TEST_LIMIT = 2000;
+		for (int i=0; i<TEST_LIMIT; ++i) {
+			wt.add("WORD" + characterSequence(i));
+		}
+		
+		List<String> words = collect(wt.iterateWords());
+		Assert.assertEquals(wt.getWordCount(), words.size());
+		for (int i=1; i<words.size(); ++i) {
+			Assert.assertTrue(words.get(i - 1).compareTo(words.get(i)) < 0);
+		}
+		for (String word : words) {
+			Assert.assertTrue(wt.contains(word));
+		}
+		
+	}
+	
+	/*
+	 * Test that a built trie matches one made with add(..), shares suffixes,
+	 * can't be changed, and stays frozen when serialized
+	 */
+	public void test_builder() {
+		
+		final String[] words = { "BAKING", "BAKINGS", "CAT", "CATS", "DOG",
+				"DOGS", "MAKING", "TAKING" };
+		
+		WordTrie.Builder builder = new WordTrie.Builder();
+		WordTrie added = new WordTrie();
+		for (String word : words) {
+			Assert.assertTrue(builder.add(word));
+			added.add(word);
+		}
+		Assert.assertFalse(builder.add("TAKING"));
+		Assert.assertFalse(builder.add("TAKING'S"));
+		try {
+			builder.add("ANT");
+			Assert.fail("Out of order word was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		
+		WordTrie built = builder.build();
+		
+		Assert.assertTrue(built.isFrozen());
+		Assert.assertFalse(added.isFrozen());
+		Assert.assertEquals(words.length, built.getWordCount());
+		Assert.assertTrue(built.getNodeCount() < added.getNodeCount());
+		
+		for (String word : words) {
+			Assert.assertTrue(built.contains(word));
+		}
+		Assert.assertFalse(built.contains("AKING"));
+		Assert.assertFalse(built.contains("BAKIN"));
+		Assert.assertTrue(built.containsPrefix("MAKI"));
+		Assert.assertFalse(built.containsPrefix("MAKINGS"));
+		Assert.assertEquals(Arrays.asList(words), collect(built.iterateWords()));
+		
+		WordTrie.Cursor c = built.newCursor();
+		for (char letter : "MAKINGS".toCharArray()) {
+			c.push(letter);
+		}
+		Assert.assertFalse(c.isPrefix());
+		c.pop();
+		Assert.assertTrue(c.isWord());
+		
+		try {
+			built.add("ZOO");
+			Assert.fail("Frozen trie was changed");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+		
+		WordTrie copy = WordTrie.deserialize(built.serialize());
+		Assert.assertNotNull(copy);
+		Assert.assertTrue(copy.isFrozen());
+		Assert.assertEquals(built.getNodeCount(), copy.getNodeCount());
+		Assert.assertEquals(Arrays.asList(words), collect(copy.iterateWords()));
+		
+		WordTrie empty = new WordTrie.Builder().build();
+		Assert.assertEquals(0, empty.getWordCount());
+		Assert.assertFalse(empty.contains("A"));
+		Assert.assertTrue(empty.containsPrefix(""));
+		
+	}
+	
+	/*
+	 * Test that removing words leaves the others and their prefixes, and
+	 * that removing the latest word undoes add(..) exactly
+	 */
+	public void test_remove() {
+		
+		WordTrie wt = new WordTrie();
+		wt.add("CAT");
+		wt.add("CATS");
+		wt.add("CAR");
+		wt.add("DOG");
+		
+		byte[] before = wt.serialize();
+		int nodes = wt.getNodeCount();
+		
+		Assert.assertEquals(4, wt.add("CATTLE"));
+		Assert.assertTrue(wt.remove("CATTLE"));
+		Assert.assertEquals(nodes, wt.getNodeCount());
+		Assert.assertTrue(Arrays.equals(before, wt.serialize()));
+		Assert.assertEquals(4, wt.add("CATTLE"));
+		
+		Assert.assertFalse(wt.remove("CATT"));
+		Assert.assertFalse(wt.remove("COW"));
+		Assert.assertFalse(wt.remove(""));
+		Assert.assertFalse(wt.remove("cat"));
+		
+		Assert.assertTrue(wt.remove("CAT"));
+		Assert.assertFalse(wt.remove("CAT"));
+		Assert.assertFalse(wt.contains("CAT"));
+		Assert.assertTrue(wt.contains("CATS"));
+		Assert.assertTrue(wt.containsPrefix("CAT"));
+		
+		Assert.assertTrue(wt.remove("CATS"));
+		Assert.assertTrue(wt.containsPrefix("CATT"));
+		Assert.assertFalse(wt.containsPrefix("CATS"));
+		
+		Assert.assertTrue(wt.remove("CATTLE"));
+		Assert.assertFalse(wt.containsPrefix("CAT"));
+		Assert.assertTrue(wt.containsPrefix("CA"));
+		Assert.assertEquals(2, wt.getWordCount());
+		Assert.assertEquals(Arrays.asList("CAR", "DOG"),
+				collect(wt.iterateWords()));
+		
+		Assert.assertTrue(wt.remove("CAR"));
+		Assert.assertTrue(wt.remove("DOG"));
+		Assert.assertEquals(0, wt.getWordCount());
+		Assert.assertFalse(wt.containsPrefix("C"));
+		Assert.assertFalse(wt.containsPrefix("D"));
+		Assert.assertTrue(wt.containsPrefix(""));
+		
+		WordTrie.Cursor c = wt.newCursor();
+		Assert.assertFalse(c.push('C'));
+		
+		WordTrie.Builder builder = new WordTrie.Builder();
+		builder.add("ZOO");
+		try {
+			builder.build().remove("ZOO");
+			Assert.fail("Frozen trie was changed");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+		
+	}
 
 }